@@ -0,0 +1,105 @@
+package jhelp.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jhelp.json.JSONFactory;
+import jhelp.json.Writer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The same payload encoded through each way of registering a class, against
+ * Jackson databind. <code>size</code> 1 is a small payload, 1000 a large one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EncodeBenchmark {
+    @Param({"1", "1000"})
+    public int size;
+
+    private List<Item> items;
+    private List<Map<String, Object>> maps;
+
+    private JSONFactory predefined;
+    private JSONFactory fields;
+    private JSONFactory methods;
+    private JSONFactory handWritten;
+    private ObjectMapper mapper;
+
+    @Setup
+    public void setup() {
+        items = Item.payload(size);
+        maps = new ArrayList<Map<String, Object>>(size);
+        for (Item item : items) {
+            maps.add(item.asMap());
+        }
+
+        predefined = JSONFactory.predefined().finish();
+        fields = JSONFactory.predefined()
+                .forFields(Item.class, "id", "name", "price", "available", "tags")
+                .finish();
+        methods = JSONFactory.predefined()
+                .forClassMethods(Item.class, "getId", "getName", "getPrice", "isAvailable", "getTags")
+                .finish();
+        handWritten = JSONFactory.predefined().forClass(Item.class, new Writer<Item>() {
+            @Override
+            public void write(JSONFactory.Session session, Item value) throws IOException {
+                session.startObject();
+                session.writeFieldName("id");
+                session.writeNumber(value.id);
+                session.writeFieldName("name");
+                session.writeString(value.name);
+                session.writeFieldName("price");
+                session.writeNumber(value.price);
+                session.writeFieldName("available");
+                session.writeBoolean(value.available);
+                session.writeNamedObject("tags", value.tags);
+                session.endObject();
+            }
+        }).finish();
+        mapper = new ObjectMapper();
+    }
+
+    @Benchmark
+    public String predefined() throws IOException {
+        return predefined.encode(maps);
+    }
+
+    @Benchmark
+    public String reflectiveFields() throws IOException {
+        return fields.encode(items);
+    }
+
+    @Benchmark
+    public String reflectiveMethods() throws IOException {
+        return methods.encode(items);
+    }
+
+    @Benchmark
+    public String handWritten() throws IOException {
+        return handWritten.encode(items);
+    }
+
+    @Benchmark
+    public String databind() throws IOException {
+        return mapper.writeValueAsString(items);
+    }
+}
@@ -0,0 +1,73 @@
+package jhelp.bench;
+
+import jhelp.math.quantile.Estimator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <code>Estimator.sampling</code> throughput over a fixed stream of random longs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EstimatorBenchmark {
+    static private final int SAMPLES = 10000;
+
+    static private final Estimator.Dividable<Long> LONGS = new Estimator.Dividable<Long>() {
+        @Override
+        public Long divide(Long a, Long b) {
+            if (a == null) {
+                return b; //nothing below the first sample yet
+            }
+            return (a >> 1) + (b >> 1) + (a & b & 1);
+        }
+
+        @Override
+        public int compare(Long o1, Long o2) {
+            return o1.compareTo(o2);
+        }
+    };
+
+    @Param({"10", "100"})
+    public int cut;
+
+    @Param({"0.5", "0.9", "0.99"})
+    public float precision;
+
+    private Long[] values;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        values = new Long[SAMPLES];
+        for (int i=0; i<values.length; i++) {
+            values[i] = random.nextLong();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public Estimator<Long> sampling() {
+        Estimator<Long> estimator = new Estimator<Long>(LONGS, cut, precision);
+        for (Long value : values) {
+            estimator.sampling(value, 1);
+        }
+        return estimator;
+    }
+}
@@ -0,0 +1,45 @@
+package jhelp.bench;
+
+import jhelp.web.HTTP;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <code>HTTP.Builder.forForm</code> on a form mixing flat, nested and array keys.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormBenchmark {
+    private Map<String, String[]> form;
+
+    @Setup
+    public void setup() {
+        form = new HashMap<String, String[]>();
+        for (int i=0; i<10; i++) {
+            form.put("flat" + i, new String[]{"v" + i});
+            form.put("user[address][line" + i + "]", new String[]{"line " + i});
+            form.put("list" + i + "[]", new String[]{"a", "b", "c"});
+        }
+    }
+
+    @Benchmark
+    public HTTP.Para forForm() {
+        return HTTP.builder().forForm(form).finish();
+    }
+}
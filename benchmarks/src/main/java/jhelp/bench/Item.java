@@ -0,0 +1,62 @@
+package jhelp.bench;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The payload element shared by the encoding benchmarks.
+ */
+public class Item {
+    public int id;
+    public String name;
+    public double price;
+    public boolean available;
+    public List<String> tags;
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public double getPrice() {
+        return price;
+    }
+
+    public boolean isAvailable() {
+        return available;
+    }
+
+    public List<String> getTags() {
+        return tags;
+    }
+
+    Map<String, Object> asMap() {
+        Map<String, Object> map = new LinkedHashMap<String, Object>();
+        map.put("id", id);
+        map.put("name", name);
+        map.put("price", price);
+        map.put("available", available);
+        map.put("tags", tags);
+        return map;
+    }
+
+    static List<Item> payload(int size) {
+        List<Item> items = new ArrayList<Item>(size);
+        for (int i=0; i<size; i++) {
+            Item item = new Item();
+            item.id = i;
+            item.name = "item-" + i;
+            item.price = i * 1.25;
+            item.available = (i & 1) == 0;
+            item.tags = Arrays.asList("tag" + (i % 7), "tag" + (i % 13));
+            items.add(item);
+        }
+        return items;
+    }
+}
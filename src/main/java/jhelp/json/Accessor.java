@@ -0,0 +1,572 @@
+package jhelp.json;
+
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.google.common.base.Throwables;
+import com.google.common.primitives.Primitives;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Collection;
+
+/**
+ * Reads one named member out of an object and writes it into a session. Accessors are
+ * resolved once when a reflective writer is built: members are read through a
+ * <code>MethodHandle</code> typed to the member's own type, so primitives reach the
+ * session unboxed, members of final types skip the per-value writer lookup, and the
+ * member name is encoded once up front. Plain reflection is
+ * kept as the fallback when no handle can be made.
+ */
+abstract class Accessor {
+    final SerializableString name;
+
+    Accessor(String name) {
+        this.name = new SerializedString(name);
+    }
+
+    abstract void write(JSONFactory.Session session, Object owner) throws IOException;
+
+    /**
+     * @return the member's current value, boxed if primitive
+     */
+    abstract Object get(Object owner);
+
+    /**
+     * @return whether this accessor leaves the member of <code>owner</code> out
+     */
+    boolean omits(Object owner) {
+        return false;
+    }
+
+    /**
+     * Write a member value already read by {@link #get(Object)}.
+     */
+    void writeValue(JSONFactory.Session session, Object value) throws IOException {
+        session.writeNamedObject(name, value);
+    }
+
+    /**
+     * Write this member of every row as one array, for a columnar layout. Nothing is
+     * omitted here, columns have to stay aligned.
+     */
+    void writeColumn(JSONFactory.Session session, Collection<?> rows) throws IOException {
+        session.startArray();
+        for (Object row : rows) {
+            session.writeObject(get(row));
+            session.checkpoint();
+        }
+        session.endArray();
+    }
+
+    /**
+     * @return an accessor leaving out the values <code>omission</code> asks to, its
+     *         checks settled now by the kind of member
+     */
+    Accessor omitting(Omission omission) {
+        return omission.nulls || omission.defaults || omission.empty ? new Omitting(this, omission) : this;
+    }
+
+    static Accessor forField(Field field) {
+        field.setAccessible(true);
+        try {
+            return of(field.getName(), owned(MethodHandles.lookup().unreflectGetter(field), field.getModifiers()),
+                    field.getType());
+        } catch (IllegalAccessException e) {
+            return new ReflectedField(field);
+        }
+    }
+
+    static Accessor forMethod(Method method) {
+        method.setAccessible(true);
+        try {
+            return of(method.getName(), owned(MethodHandles.lookup().unreflect(method), method.getModifiers()),
+                    method.getReturnType());
+        } catch (IllegalAccessException e) {
+            return new ReflectedMethod(method);
+        }
+    }
+
+    /**
+     * @return <code>handle</code> taking the owner, which static members ignore
+     */
+    static private MethodHandle owned(MethodHandle handle, int modifiers) {
+        return Modifier.isStatic(modifiers) ? MethodHandles.dropArguments(handle, 0, Object.class) : handle;
+    }
+
+    static private Accessor of(String name, MethodHandle handle, Class<?> type) {
+        if (type == int.class || type == short.class || type == byte.class) {
+            return new IntAccessor(name, handle.asType(MethodType.methodType(int.class, Object.class)), false);
+        } else if (type == long.class) {
+            return new LongAccessor(name, handle.asType(MethodType.methodType(long.class, Object.class)), false);
+        } else if (type == float.class) {
+            return new FloatAccessor(name, handle.asType(MethodType.methodType(float.class, Object.class)), false);
+        } else if (type == double.class) {
+            return new DoubleAccessor(name, handle.asType(MethodType.methodType(double.class, Object.class)), false);
+        } else if (type == boolean.class) {
+            return new BooleanAccessor(name, handle.asType(MethodType.methodType(boolean.class, Object.class)), false);
+        } else if (Modifier.isFinal(type.getModifiers()) && !type.isArray()) { //arrays are covariant
+            return new FinalAccessor(name, type, handle.asType(MethodType.methodType(Object.class, Object.class)));
+        } else {
+            return new ObjectAccessor(name, handle.asType(MethodType.methodType(Object.class, Object.class)));
+        }
+    }
+
+    /**
+     * Member of a primitive type, read unboxed. Its values can be compared through
+     * {@link #bits(Object)} without encoding, and the default policy is settled into a
+     * flag rather than an {@link Omitting} wrapper.
+     */
+    static abstract class PrimitiveAccessor extends Accessor {
+        final MethodHandle handle;
+        final boolean skipDefault;
+        private final Elements kind;
+
+        PrimitiveAccessor(String name, MethodHandle handle, boolean skipDefault, Elements kind) {
+            super(name);
+            this.handle = handle;
+            this.skipDefault = skipDefault;
+            this.kind = kind;
+        }
+
+        /**
+         * @return the member's value as bits, equal for equal values
+         */
+        abstract long bits(Object owner);
+
+        /**
+         * @return whether <code>bits</code> are of the type's default value
+         */
+        boolean isDefault(long bits) {
+            return bits == 0;
+        }
+
+        /**
+         * Store the member of <code>owner</code> as element <code>i</code> of
+         * <code>column</code>, an array of the member's type.
+         */
+        abstract void copy(Object owner, Object column, int i);
+
+        /**
+         * @return this accessor, leaving the default value out
+         */
+        abstract PrimitiveAccessor skippingDefault();
+
+        @Override
+        boolean omits(Object owner) {
+            return skipDefault && isDefault(bits(owner));
+        }
+
+        @Override
+        Accessor omitting(Omission omission) {
+            return omission.defaults ? skippingDefault() : this;
+        }
+
+        /**
+         * Gathers the column unboxed and writes it in bulk.
+         */
+        @Override
+        void writeColumn(JSONFactory.Session session, Collection<?> rows) throws IOException {
+            Object column = Array.newInstance(kind.type, rows.size());
+            int n = 0;
+            for (Object row : rows) {
+                copy(row, column, n++);
+            }
+            session.writeArray(kind, column, 0, n);
+        }
+    }
+
+    static private class IntAccessor extends PrimitiveAccessor {
+        IntAccessor(String name, MethodHandle handle, boolean skipDefault) {
+            super(name, handle, skipDefault, Elements.INT);
+        }
+
+        private int value(Object owner) {
+            try {
+                return (int) handle.invokeExact(owner);
+            } catch (Throwable t) {
+                throw Throwables.propagate(t);
+            }
+        }
+
+        @Override
+        void write(JSONFactory.Session session, Object owner) throws IOException {
+            int v = value(owner);
+            if (!skipDefault || v != 0) {
+                session.writeNumberField(name, v);
+            }
+        }
+
+        @Override
+        Object get(Object owner) {
+            return value(owner);
+        }
+
+        @Override
+        long bits(Object owner) {
+            return value(owner);
+        }
+
+        @Override
+        void copy(Object owner, Object column, int i) {
+            ((int[]) column)[i] = value(owner);
+        }
+
+        @Override
+        PrimitiveAccessor skippingDefault() {
+            return new IntAccessor(name.getValue(), handle, true);
+        }
+    }
+
+    static private class LongAccessor extends PrimitiveAccessor {
+        LongAccessor(String name, MethodHandle handle, boolean skipDefault) {
+            super(name, handle, skipDefault, Elements.LONG);
+        }
+
+        private long value(Object owner) {
+            try {
+                return (long) handle.invokeExact(owner);
+            } catch (Throwable t) {
+                throw Throwables.propagate(t);
+            }
+        }
+
+        @Override
+        void write(JSONFactory.Session session, Object owner) throws IOException {
+            long v = value(owner);
+            if (!skipDefault || v != 0) {
+                session.writeNumberField(name, v);
+            }
+        }
+
+        @Override
+        Object get(Object owner) {
+            return value(owner);
+        }
+
+        @Override
+        long bits(Object owner) {
+            return value(owner);
+        }
+
+        @Override
+        void copy(Object owner, Object column, int i) {
+            ((long[]) column)[i] = value(owner);
+        }
+
+        @Override
+        PrimitiveAccessor skippingDefault() {
+            return new LongAccessor(name.getValue(), handle, true);
+        }
+    }
+
+    static private class FloatAccessor extends PrimitiveAccessor {
+        FloatAccessor(String name, MethodHandle handle, boolean skipDefault) {
+            super(name, handle, skipDefault, Elements.FLOAT);
+        }
+
+        private float value(Object owner) {
+            try {
+                return (float) handle.invokeExact(owner);
+            } catch (Throwable t) {
+                throw Throwables.propagate(t);
+            }
+        }
+
+        @Override
+        void write(JSONFactory.Session session, Object owner) throws IOException {
+            float v = value(owner);
+            if (!skipDefault || v != 0) {
+                session.writeNumberField(name, v);
+            }
+        }
+
+        @Override
+        Object get(Object owner) {
+            return value(owner);
+        }
+
+        @Override
+        long bits(Object owner) {
+            return Float.floatToIntBits(value(owner));
+        }
+
+        @Override
+        boolean isDefault(long bits) {
+            return Float.intBitsToFloat((int) bits) == 0; //-0.0 too
+        }
+
+        @Override
+        void copy(Object owner, Object column, int i) {
+            ((float[]) column)[i] = value(owner);
+        }
+
+        @Override
+        PrimitiveAccessor skippingDefault() {
+            return new FloatAccessor(name.getValue(), handle, true);
+        }
+    }
+
+    static private class DoubleAccessor extends PrimitiveAccessor {
+        DoubleAccessor(String name, MethodHandle handle, boolean skipDefault) {
+            super(name, handle, skipDefault, Elements.DOUBLE);
+        }
+
+        private double value(Object owner) {
+            try {
+                return (double) handle.invokeExact(owner);
+            } catch (Throwable t) {
+                throw Throwables.propagate(t);
+            }
+        }
+
+        @Override
+        void write(JSONFactory.Session session, Object owner) throws IOException {
+            double v = value(owner);
+            if (!skipDefault || v != 0) {
+                session.writeNumberField(name, v);
+            }
+        }
+
+        @Override
+        Object get(Object owner) {
+            return value(owner);
+        }
+
+        @Override
+        long bits(Object owner) {
+            return Double.doubleToLongBits(value(owner));
+        }
+
+        @Override
+        boolean isDefault(long bits) {
+            return Double.longBitsToDouble(bits) == 0; //-0.0 too
+        }
+
+        @Override
+        void copy(Object owner, Object column, int i) {
+            ((double[]) column)[i] = value(owner);
+        }
+
+        @Override
+        PrimitiveAccessor skippingDefault() {
+            return new DoubleAccessor(name.getValue(), handle, true);
+        }
+    }
+
+    static private class BooleanAccessor extends PrimitiveAccessor {
+        BooleanAccessor(String name, MethodHandle handle, boolean skipDefault) {
+            super(name, handle, skipDefault, Elements.BOOLEAN);
+        }
+
+        private boolean value(Object owner) {
+            try {
+                return (boolean) handle.invokeExact(owner);
+            } catch (Throwable t) {
+                throw Throwables.propagate(t);
+            }
+        }
+
+        @Override
+        void write(JSONFactory.Session session, Object owner) throws IOException {
+            boolean v = value(owner);
+            if (!skipDefault || v) {
+                session.writeBooleanField(name, v);
+            }
+        }
+
+        @Override
+        Object get(Object owner) {
+            return value(owner);
+        }
+
+        @Override
+        long bits(Object owner) {
+            return value(owner) ? 1 : 0;
+        }
+
+        @Override
+        void copy(Object owner, Object column, int i) {
+            ((boolean[]) column)[i] = value(owner);
+        }
+
+        @Override
+        PrimitiveAccessor skippingDefault() {
+            return new BooleanAccessor(name.getValue(), handle, true);
+        }
+    }
+
+    static private class ObjectAccessor extends Accessor {
+        private final MethodHandle handle;
+
+        ObjectAccessor(String name, MethodHandle handle) {
+            super(name);
+            this.handle = handle;
+        }
+
+        @Override
+        void write(JSONFactory.Session session, Object owner) throws IOException {
+            writeValue(session, get(owner));
+        }
+
+        @Override
+        Object get(Object owner) {
+            try {
+                return (Object) handle.invokeExact(owner);
+            } catch (Throwable t) {
+                throw Throwables.propagate(t);
+            }
+        }
+    }
+
+    /**
+     * Member of a final type: any value is exactly of that type, so its writer is
+     * resolved on first use, once per factory, instead of per value.
+     */
+    static private class FinalAccessor extends Accessor {
+        private final Class<?> type;
+        private final MethodHandle handle;
+        private volatile Link link;
+
+        FinalAccessor(String name, Class<?> type, MethodHandle handle) {
+            super(name);
+            this.type = Primitives.wrap(type); //char is read boxed
+            this.handle = handle;
+        }
+
+        @Override
+        void write(JSONFactory.Session session, Object owner) throws IOException {
+            writeValue(session, get(owner));
+        }
+
+        @Override
+        void writeValue(JSONFactory.Session session, Object value) throws IOException {
+            if (value == null) {
+                session.writeNamedObject(name, null);
+                return;
+            }
+            JSONFactory factory = session.jsonFactory();
+            Link l = link;
+            if (l == null || l.factory != factory) {
+                link = l = new Link(factory, factory.resolve(type));
+            }
+            session.writeFieldName(name);
+            session.writeObject(value, l.writer);
+        }
+
+        @Override
+        Object get(Object owner) {
+            try {
+                return (Object) handle.invokeExact(owner);
+            } catch (Throwable t) {
+                throw Throwables.propagate(t);
+            }
+        }
+    }
+
+    /**
+     * Object member leaving some values out; reads once, then checks and writes.
+     */
+    static private class Omitting extends Accessor {
+        private final Accessor accessor;
+        private final Omission omission;
+
+        Omitting(Accessor accessor, Omission omission) {
+            super(accessor.name.getValue());
+            this.accessor = accessor;
+            this.omission = omission;
+        }
+
+        @Override
+        void write(JSONFactory.Session session, Object owner) throws IOException {
+            Object value = accessor.get(owner);
+            if (!omission.omits(value)) {
+                accessor.writeValue(session, value);
+            }
+        }
+
+        @Override
+        Object get(Object owner) {
+            return accessor.get(owner);
+        }
+
+        @Override
+        boolean omits(Object owner) {
+            return omission.omits(accessor.get(owner));
+        }
+
+        @Override
+        void writeColumn(JSONFactory.Session session, Collection<?> rows) throws IOException {
+            accessor.writeColumn(session, rows);
+        }
+
+        @Override
+        Accessor omitting(Omission omission) {
+            return accessor.omitting(omission);
+        }
+    }
+
+    static private class Link {
+        private final JSONFactory factory;
+        private final Writer writer;
+
+        private Link(JSONFactory factory, Writer writer) {
+            this.factory = factory;
+            this.writer = writer;
+        }
+    }
+
+    static private class ReflectedField extends Accessor {
+        private final Field field;
+
+        ReflectedField(Field field) {
+            super(field.getName());
+            this.field = field;
+        }
+
+        @Override
+        void write(JSONFactory.Session session, Object owner) throws IOException {
+            writeValue(session, get(owner));
+        }
+
+        @Override
+        Object get(Object owner) {
+            try {
+                return field.get(owner);
+            } catch (IllegalAccessException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    static private class ReflectedMethod extends Accessor {
+        private final Method method;
+
+        ReflectedMethod(Method method) {
+            super(method.getName());
+            this.method = method;
+        }
+
+        @Override
+        void write(JSONFactory.Session session, Object owner) throws IOException {
+            writeValue(session, get(owner));
+        }
+
+        @Override
+        Object get(Object owner) {
+            try {
+                return method.invoke(owner);
+            } catch (IllegalAccessException e) {
+                throw new RuntimeException(e);
+            } catch (InvocationTargetException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package jhelp.json;
+
+import java.io.IOException;
+import java.util.Collection;
+
+/**
+ * Writer of a reflectively registered class: an object of its accessors' members.
+ * Kept as a class of its own so {@link DiffEncoder} can read members one by one.
+ */
+class AccessorWriter implements Writer<Object> {
+    final Accessor[] accessors;
+
+    AccessorWriter(Accessor[] accessors) {
+        this.accessors = accessors;
+    }
+
+    @Override
+    public void write(JSONFactory.Session session, Object value) throws IOException {
+        session.startObject();
+        for (Accessor accessor : accessors) {
+            accessor.write(session, value);
+        }
+        session.endObject();
+    }
+
+    /**
+     * Write <code>rows</code>, all instances of this writer's class, as an object of
+     * one array per member.
+     */
+    void writeColumns(JSONFactory.Session session, Collection<?> rows) throws IOException {
+        session.startObject();
+        for (Accessor accessor : accessors) {
+            session.writeFieldName(accessor.name);
+            accessor.writeColumn(session, rows);
+        }
+        session.endObject();
+    }
+
+    /**
+     * @return the plan of this writer with <code>omission</code> compiled into its
+     *         accessors
+     */
+    AccessorWriter omitting(Omission omission) {
+        Accessor[] plan = new Accessor[accessors.length];
+        for (int i=0; i<plan.length; i++) {
+            plan[i] = accessors[i].omitting(omission);
+        }
+        return new AccessorWriter(plan);
+    }
+}
@@ -0,0 +1,15 @@
+package jhelp.json;
+
+import java.io.IOException;
+
+/**
+ * Hook for sessions with auto-flush on, see {@link JSONFactory.Session#autoFlush}.
+ */
+public interface Backpressure {
+    /**
+     * Called between two elements right after the session flushed; may block until the
+     * consumer has caught up.
+     * @param written bytes (chars for character sessions) handed to the stream so far
+     */
+    void flushed(JSONFactory.Session session, long written) throws IOException;
+}
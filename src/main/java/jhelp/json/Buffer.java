@@ -0,0 +1,38 @@
+package jhelp.json;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * In-memory output retained across encodes. Its backing array is kept by
+ * {@link #recycle(int)} unless it has grown past the retention limit, in which case it
+ * is dropped so one huge payload does not pin memory for the life of the thread.
+ */
+class Buffer extends ByteArrayOutputStream {
+    private final int initial;
+
+    Buffer(int initial) {
+        super(initial);
+        this.initial = initial;
+    }
+
+    byte[] array() {
+        return buf;
+    }
+
+    /**
+     * Make room for <code>capacity</code> bytes up front; only called while empty, so
+     * nothing is copied.
+     */
+    void presize(int capacity) {
+        if (count == 0 && buf.length < capacity) {
+            buf = new byte[capacity];
+        }
+    }
+
+    void recycle(int maxRetained) {
+        if (buf.length > maxRetained) {
+            buf = new byte[initial];
+        }
+        count = 0;
+    }
+}
@@ -0,0 +1,120 @@
+package jhelp.json;
+
+import com.google.common.base.Preconditions;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Output straight into a <code>ByteBuffer</code> - heap, direct or mapped. Once the
+ * first buffer is full further bytes go into chained buffers of the same kind, which can
+ * then be handed out as is or drained into a channel with gathering writes.
+ */
+public class ByteBufferOutput extends OutputStream {
+    static public final int MIN_CHUNK = 4096;
+
+    private final List<ByteBuffer> buffers = new ArrayList<ByteBuffer>();
+    private final ByteBuffer first;
+    private final int start;
+    private final int chunk;
+    private ByteBuffer current;
+
+    public ByteBufferOutput(ByteBuffer first) {
+        this(first, Math.max(first.capacity(), MIN_CHUNK));
+    }
+
+    /**
+     * @param chunk capacity of the buffers chained once <code>first</code> overflows
+     */
+    public ByteBufferOutput(ByteBuffer first, int chunk) {
+        Preconditions.checkArgument(chunk > 0);
+        this.first = first;
+        this.start = first.position();
+        this.chunk = chunk;
+        this.current = first;
+        buffers.add(first);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (!current.hasRemaining()) {
+            grow();
+        }
+        current.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (!current.hasRemaining()) {
+                grow();
+            }
+            int n = Math.min(len, current.remaining());
+            current.put(b, off, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    private void grow() {
+        current = first.isDirect() ? ByteBuffer.allocateDirect(chunk) : ByteBuffer.allocate(chunk);
+        buffers.add(current);
+    }
+
+    /**
+     * @return number of bytes written so far
+     */
+    public long size() {
+        long size = -start;
+        for (ByteBuffer b : buffers) {
+            size += b.position();
+        }
+        return size;
+    }
+
+    /**
+     * @return views of the bytes written so far, ready for reading; the chain itself is
+     *         left untouched so more can be written afterwards
+     */
+    public ByteBuffer[] buffers() {
+        ByteBuffer[] r = new ByteBuffer[buffers.size()];
+        for (int i=0; i<r.length; i++) {
+            r[i] = buffers.get(i).duplicate();
+            r[i].flip();
+        }
+        r[0].position(start);
+        return r;
+    }
+
+    /**
+     * Write out everything written so far, with a single gathering write where the
+     * channel supports it, then start over on the first buffer.
+     * @return number of bytes drained
+     */
+    public long drainTo(WritableByteChannel channel) throws IOException {
+        ByteBuffer[] srcs = buffers();
+        long n = 0;
+        if (channel instanceof GatheringByteChannel) {
+            long total = size();
+            while (n < total) {
+                n += ((GatheringByteChannel) channel).write(srcs);
+            }
+        } else {
+            for (ByteBuffer src : srcs) {
+                while (src.hasRemaining()) {
+                    n += channel.write(src);
+                }
+            }
+        }
+        first.position(start);
+        buffers.clear();
+        buffers.add(first);
+        current = first;
+        return n;
+    }
+}
@@ -0,0 +1,46 @@
+package jhelp.json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Output draining into a <code>WritableByteChannel</code>. Generators flush the same
+ * array over and over, so the wrapping buffer is kept for as long as the array is.
+ */
+public class ChannelOutput extends OutputStream {
+    private final WritableByteChannel channel;
+    private byte[] array;
+    private ByteBuffer wrapped;
+
+    public ChannelOutput(WritableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    public WritableByteChannel channel() {
+        return channel;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (b != array) {
+            array = b;
+            wrapped = ByteBuffer.wrap(b);
+        }
+        wrapped.limit(off + len).position(off);
+        while (wrapped.hasRemaining()) {
+            channel.write(wrapped);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
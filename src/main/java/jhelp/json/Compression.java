@@ -0,0 +1,70 @@
+package jhelp.json;
+
+import com.google.common.base.Preconditions;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+
+/**
+ * Compression stage of an encoding session, see {@link JSONFactory#prepare(OutputStream, Compression)}.
+ * Output is compressed as the generator flushes it, with no second pass over the json.
+ * Each instance pools its <code>Deflater</code>s, whose native memory is costly to
+ * allocate per response, together with their output buffers; share instances rather
+ * than creating one per use.
+ */
+public class Compression {
+    static public final Compression GZIP = gzip(Deflater.DEFAULT_COMPRESSION);
+    static public final Compression DEFLATE = deflate(Deflater.DEFAULT_COMPRESSION);
+
+    static private final int MAX_POOLED = 2 * Runtime.getRuntime().availableProcessors();
+
+    final boolean gzip;
+    final int level;
+    private final Queue<Deflating> pool = new ConcurrentLinkedQueue<Deflating>();
+    private final AtomicInteger pooled = new AtomicInteger();
+
+    private Compression(boolean gzip, int level) {
+        Preconditions.checkArgument(level == Deflater.DEFAULT_COMPRESSION || (level >= 0 && level <= 9),
+                "Illegal compression level %s", level);
+        this.gzip = gzip;
+        this.level = level;
+    }
+
+    /**
+     * Gzip format, as for <code>Content-Encoding: gzip</code>.
+     */
+    static public Compression gzip(int level) {
+        return new Compression(true, level);
+    }
+
+    /**
+     * Zlib format, as for <code>Content-Encoding: deflate</code>.
+     */
+    static public Compression deflate(int level) {
+        return new Compression(false, level);
+    }
+
+    Deflating start(OutputStream out) throws IOException {
+        Deflating d = pool.poll();
+        if (d == null) {
+            d = new Deflating(this);
+        } else {
+            pooled.decrementAndGet();
+        }
+        d.start(out);
+        return d;
+    }
+
+    void release(Deflating d) {
+        if (pooled.incrementAndGet() <= MAX_POOLED) {
+            pool.offer(d);
+        } else {
+            pooled.decrementAndGet();
+            d.end();
+        }
+    }
+}
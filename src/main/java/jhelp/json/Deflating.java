@@ -0,0 +1,108 @@
+package jhelp.json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Compressing stream between a session's generator and its output. A flush of the
+ * generator is a sync flush here, so everything written so far can be decompressed at
+ * the receiving end. Instances are pooled by their {@link Compression}, each keeping its
+ * <code>Deflater</code> and buffer across uses.
+ */
+class Deflating extends OutputStream {
+    static private final int BUFFER_SIZE = 8 * 1024;
+    static private final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private final Compression compression;
+    private final Deflater deflater;
+    private final CRC32 crc;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private final byte[] single = new byte[1];
+    private OutputStream out;
+
+    Deflating(Compression compression) {
+        this.compression = compression;
+        this.deflater = new Deflater(compression.level, compression.gzip);
+        this.crc = compression.gzip ? new CRC32() : null;
+    }
+
+    void start(OutputStream out) throws IOException {
+        this.out = out;
+        if (crc != null) {
+            out.write(GZIP_HEADER);
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        single[0] = (byte) b;
+        write(single, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return;
+        }
+        if (crc != null) {
+            crc.update(b, off, len);
+        }
+        deflater.setInput(b, off, len);
+        while (!deflater.needsInput()) {
+            drain(Deflater.NO_FLUSH);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        while (drain(Deflater.SYNC_FLUSH) == buffer.length) {
+        }
+        out.flush();
+    }
+
+    /**
+     * End the compressed stream, flush it and go back to the pool.
+     */
+    void finish() throws IOException {
+        OutputStream o = out;
+        try {
+            deflater.finish();
+            while (!deflater.finished()) {
+                drain(Deflater.NO_FLUSH);
+            }
+            if (crc != null) {
+                writeInt(o, (int) crc.getValue());
+                writeInt(o, deflater.getTotalIn());
+            }
+            o.flush();
+        } finally {
+            out = null;
+            deflater.reset();
+            if (crc != null) {
+                crc.reset();
+            }
+            compression.release(this);
+        }
+    }
+
+    void end() {
+        deflater.end();
+    }
+
+    private int drain(int flush) throws IOException {
+        int n = deflater.deflate(buffer, 0, buffer.length, flush);
+        if (n > 0) {
+            out.write(buffer, 0, n);
+        }
+        return n;
+    }
+
+    static private void writeInt(OutputStream o, int i) throws IOException {
+        o.write(i & 0xff);
+        o.write((i >> 8) & 0xff);
+        o.write((i >> 16) & 0xff);
+        o.write((i >> 24) & 0xff);
+    }
+}
@@ -0,0 +1,297 @@
+package jhelp.json;
+
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes successive snapshots of entities as JSON Merge Patches (RFC 7386) against the
+ * snapshot last encoded under the same key, so only changed members go out. Per key only
+ * a fingerprint is kept - a hash per leaf member, nested objects member by member - not
+ * the snapshot itself.
+ * <p>
+ * Members of reflectively registered classes are read one by one and primitives are
+ * compared without being encoded; values of other writers are encoded and then compared.
+ * A member that turns null is sent as null, which a merge patch reads as removal.
+ * <p>
+ * One encoder serves one feed; its methods are synchronized.
+ */
+public class DiffEncoder {
+    static private final HashFunction HASH = Hashing.murmur3_128();
+
+    private final JSONFactory factory;
+    private final Map<Object, Node> last = new HashMap<Object, Node>();
+    private final Buffer scratch = new Buffer(JSONFactory.Builder.DEFAULT_BUFFER_SIZE);
+    private final JSONFactory.Session<Buffer> encoder;
+    private final Buffer patch = new Buffer(JSONFactory.Builder.DEFAULT_BUFFER_SIZE);
+    private final JSONFactory.Session<Buffer> out;
+    private final List<String> pending = new ArrayList<String>();
+
+    DiffEncoder(JSONFactory factory) throws IOException {
+        this.factory = factory;
+        this.encoder = factory.prepare(scratch);
+        this.out = factory.prepare(patch);
+    }
+
+    /**
+     * @return the patch turning the last snapshot of <code>key</code> into
+     *         <code>value</code>, all of <code>value</code> the first time, or null if
+     *         nothing changed
+     */
+    public String encode(Object key, Object value) throws IOException {
+        byte[] bytes = encodeBytes(key, value);
+        return bytes == null ? null : new String(bytes, Charsets.UTF_8);
+    }
+
+    public synchronized byte[] encodeBytes(Object key, Object value) throws IOException {
+        Preconditions.checkNotNull(key);
+        Node prev = last.get(key);
+        Node now;
+        patch.reset();
+        out.reset(patch);
+        Writer writer = value == null ? null : factory.resolve(value.getClass());
+        if (writer instanceof AccessorWriter) {
+            now = members(prev, (AccessorWriter) writer, value);
+        } else {
+            int len = encode(value);
+            now = parse(len);
+            if (prev == null) {
+                out.writeRawValue(scratch.array(), 0, len);
+            } else if (prev.members != null && now.members != null) {
+                out.startObject();
+                diff(prev, now, scratch.array());
+                out.endObject();
+            } else if (prev.members != null || now.members != null || prev.hash != now.hash) {
+                out.writeRawValue(scratch.array(), 0, len);
+            }
+        }
+        last.put(key, now);
+        out.finish();
+        return patch.size() == 0 || prev != null && isEmptyObject() ? null : patch.toByteArray();
+    }
+
+    public synchronized void forget(Object key) {
+        last.remove(key);
+    }
+
+    public synchronized void clear() {
+        last.clear();
+    }
+
+    private boolean isEmptyObject() {
+        byte[] b = patch.array();
+        return patch.size() == 2 && b[0] == '{' && b[1] == '}';
+    }
+
+    /**
+     * Reflective fast path: walks the accessors, comparing primitives by their bits and
+     * encoding only the other members.
+     */
+    private Node members(Node prev, AccessorWriter writer, Object value) throws IOException {
+        Map<String, Node> members = new LinkedHashMap<String, Node>(writer.accessors.length * 2);
+        out.startObject();
+        for (Accessor accessor : writer.accessors) {
+            String name = accessor.name.getValue();
+            Node was = prev == null || prev.members == null ? null : prev.members.get(name);
+            if (accessor.omits(value)) {
+                continue; //as in the full encoding; removed below if it was there
+            }
+            Node is;
+            if (accessor instanceof Accessor.PrimitiveAccessor) {
+                is = new Node(((Accessor.PrimitiveAccessor) accessor).bits(value));
+                if (was == null || was.members != null || was.hash != is.hash) {
+                    accessor.write(out, value);
+                }
+            } else {
+                int len = encode(accessor.get(value));
+                is = parse(len);
+                is.offset = 0;
+                is.length = len;
+                member(name, was, is, scratch.array());
+            }
+            members.put(name, is);
+        }
+        if (prev != null && prev.members != null) {
+            removed(prev, members);
+        }
+        out.endObject();
+        return new Node(members);
+    }
+
+    /**
+     * Patch the members of two object snapshots into <code>out</code>.
+     * @return whether anything was written
+     */
+    private boolean diff(Node prev, Node now, byte[] bytes) throws IOException {
+        boolean wrote = false;
+        for (Map.Entry<String, Node> e : now.members.entrySet()) {
+            wrote |= member(e.getKey(), prev.members.get(e.getKey()), e.getValue(), bytes);
+        }
+        return removed(prev, now.members) || wrote;
+    }
+
+    private boolean member(String name, Node was, Node is, byte[] bytes) throws IOException {
+        if (was != null && was.members != null && is.members != null) {
+            pending.add(name);
+            if (diff(was, is, bytes)) {
+                out.endObject();
+                return true;
+            }
+            pending.remove(pending.size() - 1);
+            return false;
+        } else if (was == null || was.members != null || is.members != null || was.hash != is.hash) {
+            open();
+            out.writeFieldName(name);
+            out.writeRawValue(bytes, is.offset, is.length);
+            return true;
+        }
+        return false;
+    }
+
+    private boolean removed(Node prev, Map<String, Node> members) throws IOException {
+        boolean wrote = false;
+        for (String name : prev.members.keySet()) {
+            if (!members.containsKey(name)) {
+                open();
+                out.writeFieldName(name);
+                out.writeObject(null);
+                wrote = true;
+            }
+        }
+        return wrote;
+    }
+
+    /**
+     * Open the enclosing objects whose first change was just found.
+     */
+    private void open() throws IOException {
+        for (String name : pending) {
+            out.writeFieldName(name);
+            out.startObject();
+        }
+        pending.clear();
+    }
+
+    private int encode(Object value) throws IOException {
+        scratch.reset();
+        encoder.reset(scratch).writeObject(value).finish();
+        return scratch.size();
+    }
+
+    private Node parse(int len) throws IOException {
+        byte[] bytes = scratch.array();
+        JsonParser parser = factory.backend().createParser(bytes, 0, len);
+        try {
+            parser.nextToken();
+            return node(parser, bytes, 0, len);
+        } finally {
+            parser.close();
+        }
+    }
+
+    /**
+     * Fingerprint the value the parser is at, <code>bytes[off, off+len)</code> if known,
+     * leaving the parser on its last token.
+     */
+    private Node node(JsonParser parser, byte[] bytes, int off, int len) throws IOException {
+        if (parser.getCurrentToken() == JsonToken.START_OBJECT) {
+            Map<String, Node> members = new LinkedHashMap<String, Node>();
+            Node member = null;
+            while (true) {
+                JsonToken token = parser.nextToken();
+                if (member != null) {
+                    member.length = end(bytes, parser) - member.offset;
+                    member.hash = HASH.hashBytes(bytes, member.offset, member.length).asLong();
+                }
+                if (token != JsonToken.FIELD_NAME) {
+                    break;
+                }
+                String name = parser.getCurrentName();
+                int start = valueStart(bytes, offset(parser));
+                parser.nextToken();
+                Node child = node(parser, bytes, start, -1);
+                child.offset = start;
+                members.put(name, child);
+                member = child;
+            }
+            Node node = new Node(members);
+            node.offset = off;
+            return node;
+        }
+        parser.skipChildren();
+        Node node = new Node(len < 0 ? 0 : HASH.hashBytes(bytes, off, len).asLong());
+        node.offset = off;
+        node.length = len;
+        return node;
+    }
+
+    /**
+     * @return where the value before the parser's current token ends, our generators
+     *         separating values with a comma at most
+     */
+    static private int end(byte[] bytes, JsonParser parser) {
+        int k = offset(parser);
+        while (k > 0 && (bytes[k - 1] == ',' || Character.isWhitespace(bytes[k - 1]))) {
+            k--;
+        }
+        return k;
+    }
+
+    /**
+     * @return where the value named by the field name at <code>k</code> starts; the
+     *         parser doesn't locate values following a name itself
+     */
+    static private int valueStart(byte[] bytes, int k) {
+        while (bytes[k] != '"') {
+            k++; //a separator before the name
+        }
+        for (k++; bytes[k] != '"'; k++) {
+            if (bytes[k] == '\\') {
+                k++;
+            }
+        }
+        for (k++; bytes[k] == ':' || Character.isWhitespace(bytes[k]); k++) {
+        }
+        return k;
+    }
+
+    /**
+     * @return the offset of the parser's current token; byte parsers of this Jackson
+     *         version report it as a character offset
+     */
+    static private int offset(JsonParser parser) {
+        JsonLocation location = parser.getTokenLocation();
+        return (int) (location.getByteOffset() >= 0 ? location.getByteOffset() : location.getCharOffset());
+    }
+
+    /**
+     * Hash of a leaf value, or the members of an object. Offset and length locate the
+     * value in the latest encoding only and mean nothing once it is stored.
+     */
+    static private class Node {
+        private long hash;
+        private final Map<String, Node> members;
+        private int offset;
+        private int length;
+
+        private Node(long hash) {
+            this.hash = hash;
+            this.members = null;
+        }
+
+        private Node(Map<String, Node> members) {
+            this.members = members;
+        }
+    }
+}
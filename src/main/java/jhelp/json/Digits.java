@@ -0,0 +1,64 @@
+package jhelp.json;
+
+import com.fasterxml.jackson.core.io.NumberOutput;
+
+/**
+ * Formats primitives into a caller-owned <code>char[]</code>, producing exactly what the
+ * generator would for the same value. Integers never allocate; floating-point values only
+ * do when they are fractional or beyond the range <code>toString</code> prints plainly.
+ */
+final class Digits {
+    static final int MAX_LENGTH = 32; //longest formatted value, quoted NaN included
+
+    static private final long NEGATIVE_ZERO = Double.doubleToRawLongBits(-0.0);
+    static private final double PLAIN_LIMIT = 1e7; //Double.toString turns to E-notation here
+
+    private Digits() {
+    }
+
+    static int format(int value, char[] buf, int off) {
+        return NumberOutput.outputInt(value, buf, off);
+    }
+
+    static int format(long value, char[] buf, int off) {
+        return NumberOutput.outputLong(value, buf, off);
+    }
+
+    static int format(boolean value, char[] buf, int off) {
+        return copy(value ? "true" : "false", buf, off);
+    }
+
+    static int format(double value, char[] buf, int off, boolean quoteNonNumeric) {
+        if (value == Math.rint(value) && Math.abs(value) < PLAIN_LIMIT
+                && Double.doubleToRawLongBits(value) != NEGATIVE_ZERO) {
+            off = NumberOutput.outputLong((long) value, buf, off);
+            buf[off++] = '.';
+            buf[off++] = '0';
+            return off;
+        } else if (quoteNonNumeric && (Double.isNaN(value) || Double.isInfinite(value))) {
+            buf[off++] = '"';
+            off = copy(Double.toString(value), buf, off);
+            buf[off++] = '"';
+            return off;
+        }
+        return copy(Double.toString(value), buf, off);
+    }
+
+    static int format(float value, char[] buf, int off, boolean quoteNonNumeric) {
+        if (value == Math.rint(value) && Math.abs(value) < PLAIN_LIMIT
+                && Double.doubleToRawLongBits(value) != NEGATIVE_ZERO) {
+            return format((double) value, buf, off, quoteNonNumeric);
+        } else if (quoteNonNumeric && (Float.isNaN(value) || Float.isInfinite(value))) {
+            buf[off++] = '"';
+            off = copy(Float.toString(value), buf, off);
+            buf[off++] = '"';
+            return off;
+        }
+        return copy(Float.toString(value), buf, off);
+    }
+
+    static private int copy(String s, char[] buf, int off) {
+        s.getChars(0, s.length(), buf, off);
+        return off + s.length();
+    }
+}
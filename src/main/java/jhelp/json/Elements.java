@@ -0,0 +1,140 @@
+package jhelp.json;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+
+/**
+ * Element access to the primitive array types, so bulk writes and parallel slices
+ * share one loop across them. Each constant casts to its own array type only.
+ */
+enum Elements {
+    BYTE(byte.class) {
+        @Override
+        int format(Object a, int i, char[] buf, int off, boolean quote) {
+            return Digits.format(((byte[]) a)[i], buf, off);
+        }
+
+        @Override
+        void write(JsonGenerator generator, Object a, int i) throws IOException {
+            generator.writeNumber(((byte[]) a)[i]);
+        }
+    },
+    SHORT(short.class) {
+        @Override
+        int format(Object a, int i, char[] buf, int off, boolean quote) {
+            return Digits.format(((short[]) a)[i], buf, off);
+        }
+
+        @Override
+        void write(JsonGenerator generator, Object a, int i) throws IOException {
+            generator.writeNumber(((short[]) a)[i]);
+        }
+    },
+    INT(int.class) {
+        @Override
+        int format(Object a, int i, char[] buf, int off, boolean quote) {
+            return Digits.format(((int[]) a)[i], buf, off);
+        }
+
+        @Override
+        void write(JsonGenerator generator, Object a, int i) throws IOException {
+            generator.writeNumber(((int[]) a)[i]);
+        }
+    },
+    LONG(long.class) {
+        @Override
+        int format(Object a, int i, char[] buf, int off, boolean quote) {
+            return Digits.format(((long[]) a)[i], buf, off);
+        }
+
+        @Override
+        void write(JsonGenerator generator, Object a, int i) throws IOException {
+            generator.writeNumber(((long[]) a)[i]);
+        }
+    },
+    FLOAT(float.class) {
+        @Override
+        int format(Object a, int i, char[] buf, int off, boolean quote) {
+            return Digits.format(((float[]) a)[i], buf, off, quote);
+        }
+
+        @Override
+        void write(JsonGenerator generator, Object a, int i) throws IOException {
+            generator.writeNumber(((float[]) a)[i]);
+        }
+    },
+    DOUBLE(double.class) {
+        @Override
+        int format(Object a, int i, char[] buf, int off, boolean quote) {
+            return Digits.format(((double[]) a)[i], buf, off, quote);
+        }
+
+        @Override
+        void write(JsonGenerator generator, Object a, int i) throws IOException {
+            generator.writeNumber(((double[]) a)[i]);
+        }
+    },
+    BOOLEAN(boolean.class) {
+        @Override
+        int format(Object a, int i, char[] buf, int off, boolean quote) {
+            return Digits.format(((boolean[]) a)[i], buf, off);
+        }
+
+        @Override
+        void write(JsonGenerator generator, Object a, int i) throws IOException {
+            generator.writeBoolean(((boolean[]) a)[i]);
+        }
+
+        @Override
+        boolean numeric() {
+            return false;
+        }
+    };
+
+    final Class<?> type; //of the elements
+
+    Elements(Class<?> type) {
+        this.type = type;
+    }
+
+    /**
+     * Format element <code>i</code> of <code>a</code> into <code>buf</code> at
+     * <code>off</code>, as the generator would write it.
+     * @param quote whether non-numeric floating-point values are quoted
+     * @return the offset past the element
+     */
+    abstract int format(Object a, int i, char[] buf, int off, boolean quote);
+
+    abstract void write(JsonGenerator generator, Object a, int i) throws IOException;
+
+    /**
+     * @return whether the elements are numbers, which a generator may be set to write
+     *         as strings
+     */
+    boolean numeric() {
+        return true;
+    }
+
+    /**
+     * @return the constant of the primitive array <code>a</code>, or null
+     */
+    static Elements of(Object a) {
+        if (a instanceof byte[]) {
+            return BYTE;
+        } else if (a instanceof short[]) {
+            return SHORT;
+        } else if (a instanceof int[]) {
+            return INT;
+        } else if (a instanceof long[]) {
+            return LONG;
+        } else if (a instanceof float[]) {
+            return FLOAT;
+        } else if (a instanceof double[]) {
+            return DOUBLE;
+        } else if (a instanceof boolean[]) {
+            return BOOLEAN;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,17 @@
+package jhelp.json;
+
+/**
+ * Receives what an instrumented {@link JSONFactory} observes, see
+ * {@link JSONFactory.Builder#instrument}. Called from encoding threads, concurrently.
+ */
+public interface EncodeListener {
+    /**
+     * A value was written; nanos and bytes include nested values.
+     */
+    void encoded(Class cls, Writer writer, long nanos, long bytes);
+
+    /**
+     * The writer for <code>cls</code> wasn't cached and had to be looked up.
+     */
+    void resolved(Class cls, Writer writer);
+}
@@ -0,0 +1,101 @@
+package jhelp.json;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link EncodeListener} keeping counts per class, for snapshots by class or by writer.
+ * With sampling on, counts cover sampled values only.
+ */
+public class EncodeMetrics implements EncodeListener {
+    private final ConcurrentMap<Class, Counters> counters = new ConcurrentHashMap<Class, Counters>();
+
+    @Override
+    public void encoded(Class cls, Writer writer, long nanos, long bytes) {
+        Counters c = counters(cls, writer);
+        c.invocations.increment();
+        c.nanos.add(nanos);
+        c.bytes.add(bytes);
+    }
+
+    @Override
+    public void resolved(Class cls, Writer writer) {
+        counters(cls, writer).misses.increment();
+    }
+
+    private Counters counters(Class cls, Writer writer) {
+        Counters c = counters.get(cls);
+        if (c == null) {
+            Counters prev = counters.putIfAbsent(cls, c = new Counters(writer));
+            if (prev != null) {
+                c = prev;
+            }
+        }
+        return c;
+    }
+
+    public Map<Class, Stats> byClass() {
+        Map<Class, Stats> r = new HashMap<Class, Stats>();
+        for (Map.Entry<Class, Counters> e : counters.entrySet()) {
+            r.put(e.getKey(), e.getValue().snapshot());
+        }
+        return r;
+    }
+
+    public Map<Writer, Stats> byWriter() {
+        Map<Writer, Stats> r = new HashMap<Writer, Stats>();
+        for (Counters c : counters.values()) {
+            Stats s = c.snapshot();
+            Stats prev = r.get(c.writer);
+            r.put(c.writer, prev == null ? s : prev.plus(s));
+        }
+        return r;
+    }
+
+    public void clear() {
+        counters.clear();
+    }
+
+    static public class Stats {
+        public final long invocations;
+        public final long nanos;
+        public final long bytes;
+        public final long misses;
+
+        public Stats(long invocations, long nanos, long bytes, long misses) {
+            this.invocations = invocations;
+            this.nanos = nanos;
+            this.bytes = bytes;
+            this.misses = misses;
+        }
+
+        Stats plus(Stats that) {
+            return new Stats(invocations + that.invocations, nanos + that.nanos,
+                    bytes + that.bytes, misses + that.misses);
+        }
+
+        @Override
+        public String toString() {
+            return "invocations=" + invocations + ", nanos=" + nanos + ", bytes=" + bytes + ", misses=" + misses;
+        }
+    }
+
+    static private class Counters {
+        private final Writer writer;
+        private final LongAdder invocations = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+
+        private Counters(Writer writer) {
+            this.writer = writer;
+        }
+
+        private Stats snapshot() {
+            return new Stats(invocations.sum(), nanos.sum(), bytes.sum(), misses.sum());
+        }
+    }
+}
@@ -0,0 +1,353 @@
+package jhelp.json;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.primitives.Primitives;
+import org.apache.commons.lang.reflect.FieldUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Decoding counterpart of {@link JSONFactory}: objects are built straight from parser
+ * tokens by the {@link Reader}s registered per class, with no intermediate tree.
+ */
+public class JSONDecoder {
+    private final Map<Class, Reader> readers; //as registered, never modified after finish()
+    private final ConcurrentMap<Class, Reader> resolved;
+    private final JsonFactory factory;
+
+    public class Session {
+        private final JsonParser parser;
+
+        public Session(JsonParser parser) {
+            this.parser = parser;
+        }
+
+        /**
+         * @return the token the session is on, moving to the first one if not started yet
+         */
+        public JsonToken token() throws IOException {
+            JsonToken t = parser.getCurrentToken();
+            return t != null ? t : parser.nextToken();
+        }
+
+        public JsonToken next() throws IOException {
+            return parser.nextToken();
+        }
+
+        /**
+         * Read a value of class <code>cls</code> with its registered reader, or null for
+         * a json null.
+         */
+        public <T> T read(Class<T> cls) throws IOException {
+            if (token() == JsonToken.VALUE_NULL) {
+                return null;
+            }
+            return Primitives.wrap(cls).cast(resolve(cls).read(this));
+        }
+
+        /**
+         * Read any value into the plain Java types: maps, lists, strings, numbers and
+         * booleans.
+         */
+        public Object readAny() throws IOException {
+            switch (token()) {
+                case START_OBJECT:
+                    return Readers.MAP.read(this);
+                case START_ARRAY:
+                    return Readers.LIST.read(this);
+                case VALUE_STRING:
+                    return parser.getText();
+                case VALUE_NUMBER_INT:
+                case VALUE_NUMBER_FLOAT:
+                    return parser.getNumberValue();
+                case VALUE_TRUE:
+                    return Boolean.TRUE;
+                case VALUE_FALSE:
+                    return Boolean.FALSE;
+                case VALUE_NULL:
+                    return null;
+                default:
+                    throw new IllegalStateException("Unexpected " + token() + " at " + parser.getCurrentLocation());
+            }
+        }
+
+        /**
+         * Enter the object the session is on.
+         */
+        public Session startObject() throws IOException {
+            expect(JsonToken.START_OBJECT);
+            return this;
+        }
+
+        /**
+         * Move to the value of the next member of the current object.
+         * @return the member's name, or null once the object has ended
+         */
+        public String nextField() throws IOException {
+            if (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                parser.nextToken();
+                return name;
+            }
+            expect(JsonToken.END_OBJECT);
+            return null;
+        }
+
+        /**
+         * Enter the array the session is on.
+         */
+        public Session startArray() throws IOException {
+            expect(JsonToken.START_ARRAY);
+            return this;
+        }
+
+        /**
+         * Move to the next element of the current array.
+         * @return false once the array has ended
+         */
+        public boolean nextElement() throws IOException {
+            return parser.nextToken() != JsonToken.END_ARRAY;
+        }
+
+        /**
+         * Skip the value the session is on, children included.
+         */
+        public Session skip() throws IOException {
+            parser.skipChildren();
+            return this;
+        }
+
+        public int readInt() throws IOException {
+            token();
+            return parser.getIntValue();
+        }
+
+        public long readLong() throws IOException {
+            token();
+            return parser.getLongValue();
+        }
+
+        public float readFloat() throws IOException {
+            token();
+            return parser.getFloatValue();
+        }
+
+        public double readDouble() throws IOException {
+            token();
+            return parser.getDoubleValue();
+        }
+
+        public boolean readBoolean() throws IOException {
+            JsonToken t = token();
+            Preconditions.checkState(t == JsonToken.VALUE_TRUE || t == JsonToken.VALUE_FALSE,
+                    "Expected a boolean instead of %s at %s", t, parser.getCurrentLocation());
+            return t == JsonToken.VALUE_TRUE;
+        }
+
+        public String readString() throws IOException {
+            return token() == JsonToken.VALUE_NULL ? null : parser.getText();
+        }
+
+        private void expect(JsonToken expected) throws IOException {
+            JsonToken t = token();
+            Preconditions.checkState(t == expected,
+                    "Expected %s instead of %s at %s", expected, t, parser.getCurrentLocation());
+        }
+
+        public void close() throws IOException {
+            parser.close();
+        }
+    }
+
+    private JSONDecoder(Builder builder) {
+        this.readers = ImmutableMap.copyOf(builder.readers);
+        this.resolved = new ConcurrentHashMap<Class, Reader>(this.readers);
+        this.factory = builder.backend;
+    }
+
+    public Session prepare(InputStream is) throws IOException {
+        return new Session(factory.createParser(is));
+    }
+
+    public Session prepare(String json) throws IOException {
+        return new Session(factory.createParser(json));
+    }
+
+    public Session prepare(byte[] json, int off, int len) throws IOException {
+        return new Session(factory.createParser(json, off, len));
+    }
+
+    public <T> T decode(String json, Class<T> cls) throws IOException {
+        return decode(prepare(json), cls);
+    }
+
+    public <T> T decode(byte[] json, Class<T> cls) throws IOException {
+        return decode(prepare(json, 0, json.length), cls);
+    }
+
+    public <T> T decode(InputStream is, Class<T> cls) throws IOException {
+        return decode(prepare(is), cls);
+    }
+
+    private <T> T decode(Session session, Class<T> cls) throws IOException {
+        try {
+            return session.read(cls);
+        } finally {
+            session.close();
+        }
+    }
+
+    /**
+     * Find the reader for <code>cls</code>. Unlike writers, readers are looked up by
+     * exact class, arrays of reference types aside, since a reader has to know what to
+     * instantiate.
+     */
+    Reader<?> resolve(final Class<?> cls) {
+        Reader<?> r = resolved.get(cls);
+        if (r == null) {
+            r = Readers.container(cls, readers);
+            if (r == null) {
+                Preconditions.checkState(cls.isArray() && !cls.getComponentType().isPrimitive(),
+                        "Don't know how to read class %s from json", cls.getName());
+                r = new Reader<Object>() {
+                    @Override
+                    public Object read(Session session) throws IOException {
+                        List<Object> items = new ArrayList<Object>();
+                        session.startArray();
+                        while (session.nextElement()) {
+                            items.add(session.read(cls.getComponentType()));
+                        }
+                        return items.toArray((Object[]) Array.newInstance(cls.getComponentType(), items.size()));
+                    }
+                };
+            }
+            Reader<?> prev = resolved.putIfAbsent(cls, r);
+            if (prev != null) {
+                r = prev;
+            }
+        }
+        return r;
+    }
+
+    static public Builder predefined() {
+        Builder b = new Builder();
+        b.readers.putAll(Readers.PREDIFINED);
+        return b;
+    }
+
+    static public Builder empty() {
+        return new Builder();
+    }
+
+    static public class Builder {
+        private final Map<Class, Reader> readers = new HashMap<Class, Reader>();
+        private JsonFactory backend = new JsonFactory();
+
+        public JSONDecoder finish() {
+            return new JSONDecoder(this);
+        }
+
+        /**
+         * Parse with <code>backend</code>, see {@link JSONFactory.Builder#backend}.
+         */
+        public Builder backend(JsonFactory backend) {
+            this.backend = Preconditions.checkNotNull(backend);
+            return this;
+        }
+
+        public <T> Builder forClass(Class<T> cls, Reader<T> reader) {
+            readers.put(cls, reader);
+            return this;
+        }
+
+        /**
+         * Reader reflectively setting the fields declared by the class, the
+         * counterpart of {@link JSONFactory.Builder#forDeclaredFields}.
+         */
+        public <T> Builder forDeclaredFields(Class<T> cls) {
+            return forClassFields(cls, cls.getDeclaredFields());
+        }
+
+        /**
+         * Reader reflectively setting the public fields of the class, inherited ones
+         * included, the counterpart of {@link JSONFactory.Builder#forFields}.
+         */
+        public <T> Builder forFields(Class<T> cls) {
+            return forClassFields(cls, cls.getFields());
+        }
+
+        public <T> Builder forFields(Class<T> clz, final String... fields) {
+            final Field[] mutators = new Field[fields.length];
+            for (int i=0; i<mutators.length; i++) {
+                mutators[i] = FieldUtils.getField(clz, fields[i], true);
+            }
+            return (forClassFields(clz, mutators));
+        }
+
+        /**
+         * Reader instantiating the class by its no-argument constructor, then setting
+         * the given fields from the members of the same name. Other members are skipped.
+         */
+        public Builder forClassFields(Class<?> cls, Field[] fields) {
+            final Map<String, Mutator> mutators = new HashMap<String, Mutator>();
+            for (Field f : fields) {
+                if (!Modifier.isStatic(f.getModifiers())) { //not state of the decoded object
+                    mutators.put(f.getName(), Mutator.forField(f));
+                }
+            }
+            final MethodHandle constructor;
+            try {
+                Constructor<?> c = cls.getDeclaredConstructor();
+                c.setAccessible(true);
+                constructor = MethodHandles.lookup().unreflectConstructor(c)
+                        .asType(MethodType.methodType(Object.class));
+            } catch (NoSuchMethodException e) {
+                throw new RuntimeException(e);
+            } catch (IllegalAccessException e) {
+                throw new RuntimeException(e);
+            }
+            readers.put(cls, new Reader<Object>() {
+                @Override
+                public Object read(Session session) throws IOException {
+                    Object value;
+                    try {
+                        value = (Object) constructor.invokeExact();
+                    } catch (Throwable t) {
+                        throw Throwables.propagate(t);
+                    }
+                    session.startObject();
+                    for (String name = session.nextField(); name != null; name = session.nextField()) {
+                        Mutator m = mutators.get(name);
+                        if (m == null) {
+                            session.skip();
+                        } else {
+                            m.read(session, value);
+                        }
+                    }
+                    return value;
+                }
+            });
+            return this;
+        }
+    }
+}
@@ -2,70 +2,508 @@ package jhelp.json;
 
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.google.common.base.Charsets;
 import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import org.apache.commons.lang.reflect.FieldUtils;
 
 import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.Flushable;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.lang.reflect.Array;
 import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
 
 
 public class JSONFactory {
-    private final Map<Class, Writer> writers;
+    static private final int BULK_SIZE = 1024;
+    static private final int RAW_CHUNK = 8 * 1024;
+
+    static private int length(String separator) {
+        return separator == null ? 0 : separator.length(); //ASCII in practice
+    }
+    static private final SerializableString COMMA = new SerializedString(",");
+
+    private final Map<Class, Writer> writers; //as registered, never modified after finish()
+    private final ConcurrentMap<Class, Writer> resolved; //memoized lookups, shared by all sessions
     private final JsonFactory factory;
+    private final boolean textual; //JSON text, as opposed to a binary encoding such as Smile
+    private final int maxRetained;
+    private final EncodeListener listener;
+    private final Set<Omit> omit;
+    private final Set<Class> columnar;
+    private final Map<Class, Set<Omit>> omitByClass;
+    private final SizeHints sizes = new SizeHints();
+    private final int sampleEvery;
+    private final Cache<Object, SerializableString> keys;
+    private final Set<Class> cachedClasses;
+    private final Cache<Object, byte[]> encoded; //by identity
+    private final ForkJoinPool pool;
+    private final int parallelThreshold;
+    private final ThreadLocal<Pooled> pooled = new ThreadLocal<Pooled>();
 
-    public class Session<OS extends OutputStream> {
-        private final OS stream;
+    /**
+     * An encoding in progress. <code>OS</code> is normally an <code>OutputStream</code>
+     * receiving UTF-8 bytes; sessions over an <code>Appendable</code> (see
+     * {@link JSONFactory#prepareChars}) write characters with no byte round-trip.
+     */
+    public class Session<OS> {
+        private final Target target;
+        private final CharTarget chars;
         private final JsonGenerator generator;
+        private OS stream;
+        private char[] digits;
+        private Deflating deflating;
+        private int flushEvery;
+        private Backpressure backpressure;
+        private long flushedAt;
+        private SerializableString separator;
+        private int flushRecords;
+        private long records;
+        private int rootSeparator = length(factory.getRootValueSeparator()); //written between root values
+        private SkippedSeparator skipped; //root separator after a reset, if any
 
         public Session(OS stream) throws IOException {
+            this(stream, !(stream instanceof OutputStream));
+        }
+
+        private Session(OS stream, boolean chars) throws IOException {
+            Preconditions.checkArgument(chars ? stream instanceof Appendable : stream instanceof OutputStream,
+                    "Can't write json to %s", stream);
+            this.stream = stream;
+            if (chars) {
+                this.target = null;
+                this.chars = new CharTarget((Appendable) stream);
+                this.generator = factory.createGenerator(this.chars);
+            } else {
+                this.target = new Target((OutputStream) stream);
+                this.chars = null;
+                this.generator = factory.createGenerator(target);
+            }
+        }
+
+        /**
+         * Session over a pooled generator, for one encode.
+         */
+        private Session(OS stream, Target target, CharTarget chars, JsonGenerator generator, char[] digits) {
+            this.stream = stream;
+            this.target = target;
+            this.chars = chars;
+            this.generator = generator;
+            this.digits = digits;
+        }
+
+        /**
+         * Point this session at a new stream, keeping its generator and buffers. Whatever
+         * was written so far is flushed to the previous stream first. The session must be
+         * between root values; the first one written to the new stream is not separated
+         * from those before, the ones after it are, as usual.
+         */
+        public Session<OS> reset(OS stream) throws IOException {
+            return reset(stream, null);
+        }
+
+        /**
+         * Reset to a new stream, compressing what goes to it with <code>compression</code>
+         * if not null. A compressed stream the session was writing is ended first.
+         */
+        public Session<OS> reset(OS stream, Compression compression) throws IOException {
+            Preconditions.checkState(textual, "Binary formats carry state across values, can't reset");
+            Preconditions.checkState(generator.getOutputContext().inRoot(),
+                    "Can't reset a session in the middle of a value");
+            Preconditions.checkArgument(compression == null || target != null, "Can't compress characters");
+            if (deflating != null) {
+                finish();
+            } else {
+                generator.flush();
+            }
+            skipSeparator();
             this.stream = stream;
-            this.generator = factory.createGenerator(stream);
+            if (target != null) {
+                target.stream = (OutputStream) stream;
+                compress(compression);
+            } else {
+                chars.out = (Appendable) stream;
+            }
+            return this;
+        }
+
+        private void rootSeparator(SerializableString separator) {
+            generator.setRootValueSeparator(separator);
+            rootSeparator = separator == null ? 0 : length(separator.getValue());
+        }
+
+        /**
+         * The generator counts root values across streams, so it would separate the
+         * first value of the new stream from the last one of the old: have it skip that
+         * separator only. Records write their own separators.
+         */
+        private void skipSeparator() {
+            String root = factory.getRootValueSeparator();
+            if (separator != null || root == null || generator.getOutputContext().getEntryCount() == 0) {
+                return; //none due
+            }
+            if (skipped == null) {
+                skipped = new SkippedSeparator(root);
+            }
+            skipped.skip = true;
+            generator.setRootValueSeparator(skipped);
+            rootSeparator = root.length();
+        }
+
+        private void compress(Compression compression) throws IOException {
+            if (compression != null) {
+                deflating = compression.start(target.stream);
+                target.stream = deflating;
+            }
+        }
+
+        /**
+         * Flush whenever at least <code>bytes</code> more have left the generator since
+         * the last flush, checked between the elements of arrays and streamed sources.
+         * Output leaves the generator in runs the size of its own buffer, which bounds how
+         * fine-grained this can be. <code>backpressure</code>, if any, is called after
+         * each such flush and may block to hold the producer back.
+         */
+        public Session<OS> autoFlush(int bytes, Backpressure backpressure) {
+            Preconditions.checkArgument(bytes > 0);
+            this.flushEvery = bytes;
+            this.backpressure = backpressure;
+            this.flushedAt = written();
+            return this;
+        }
+
+        /**
+         * Let the session flush if auto-flush is on and due. Writers of long or unbounded
+         * arrays call this between elements.
+         */
+        public Session<OS> checkpoint() throws IOException {
+            if (flushEvery > 0 && written() - flushedAt >= flushEvery) {
+                flush();
+            }
+            return this;
+        }
+
+        /**
+         * Push everything written so far down to the stream, then give backpressure, if
+         * any, its say.
+         */
+        public Session<OS> flush() throws IOException {
+            generator.flush();
+            flushedAt = written();
+            if (backpressure != null) {
+                backpressure.flushed(this, flushedAt);
+            }
+            return this;
+        }
+
+        /**
+         * Turn this session into a record writer: every {@link #writeRecord} is followed
+         * by <code>separator</code>, e.g. "\n" for line-delimited JSON, and a flush is
+         * forced every <code>flushRecords</code> records (0 leaves it to auto-flush).
+         */
+        public Session<OS> separateRecords(String separator, int flushRecords) {
+            Preconditions.checkArgument(flushRecords >= 0);
+            if (textual) {
+                rootSeparator(null);
+            }
+            this.separator = new SerializedString(separator);
+            this.flushRecords = flushRecords;
+            return this;
+        }
+
+        public Session<OS> writeRecord(Object record) throws IOException {
+            Preconditions.checkState(separator != null, "Records are not separated yet");
+            writeObject(record);
+            if (textual) { //binary formats delimit their own values
+                generator.writeRaw(separator);
+            }
+            if (flushRecords > 0 && ++records % flushRecords == 0) {
+                flush();
+            } else {
+                checkpoint();
+            }
+            return this;
+        }
+
+        /**
+         * Write <code>value</code> - a List, Object[] or primitive array of
+         * <code>length</code> elements - in parallel slices, provided the factory is set
+         * up for it and the array is large enough.
+         * @return false, having written nothing, otherwise
+         */
+        boolean writeParallel(Object value, int length) throws IOException {
+            if (pool == null || length < parallelThreshold || !textual) {
+                return false;
+            }
+            generator.writeStartArray();
+            Parallel.write(JSONFactory.this, pool, this, value, length);
+            generator.writeEndArray();
+            return true;
+        }
+
+        /**
+         * Put already encoded bytes into the output as they are. The generator is not
+         * told, so the caller is responsible for separators and nesting.
+         */
+        void splice(byte[] b, int off, int len) throws IOException {
+            if (target != null) {
+                hold(true);
+                try {
+                    generator.flush();
+                } finally {
+                    hold(false);
+                }
+                target.write(b, off, len);
+            } else {
+                generator.writeRaw(new String(b, off, len, Charsets.UTF_8));
+            }
+        }
+
+        /**
+         * Write <code>rows</code> column by column, see {@link Builder#columnar}, if all
+         * of them are of one class registered for it.
+         * @return false, nothing written, if they are not
+         */
+        boolean writeColumns(Collection<?> rows) throws IOException {
+            if (columnar.isEmpty() || rows.isEmpty()) {
+                return false;
+            }
+            Iterator<?> it = rows.iterator();
+            Object first = it.next();
+            if (first == null || !columnar.contains(first.getClass())) {
+                return false;
+            }
+            Class cls = first.getClass();
+            while (it.hasNext()) {
+                Object row = it.next();
+                if (row == null || row.getClass() != cls) {
+                    return false;
+                }
+            }
+            Writer w = resolve(cls);
+            if (!(w instanceof AccessorWriter)) {
+                return false;
+            }
+            ((AccessorWriter) w).writeColumns(this, rows);
+            return true;
+        }
+
+        /**
+         * @return bytes, or chars for character sessions, handed to the stream so far
+         */
+        long written() {
+            return target != null ? target.count : chars.count;
         }
 
         public Session<OS> writeObject(Object data) throws IOException {
             if (data == null) {
                 generator.writeNull();
             } else {
-                Class cls = data.getClass();
-                Writer w = writers.get(cls);
-                if (w == null) {
-                    if (cls.isArray()) {
-                        w = Writers.ARRAY; //primitive arrays should have been shot ahead
-                    } else {
-                        w = searchInterfaces(cls);
-                        if (w == null) {
-                            w = searchAncestors(cls);
-                            Preconditions.checkState(w != null,
-                                    "Don't know how to write class %s as json",
-                                    cls.getName());
-                        }
-                        writers.put(cls, w);
-                    }
+                write(data, resolve(data.getClass()));
+            }
+            return this;
+        }
+
+        /**
+         * Write <code>data</code> with a writer the caller resolved beforehand, e.g. once
+         * for a member whose type is final, skipping the lookup by class.
+         */
+        public Session<OS> writeObject(Object data, Writer writer) throws IOException {
+            if (data == null) {
+                generator.writeNull();
+            } else {
+                write(data, writer);
+            }
+            return this;
+        }
+
+        private void write(Object data, Writer writer) throws IOException {
+            boolean sampled = listener != null
+                    && (sampleEvery == 1 || ThreadLocalRandom.current().nextInt(sampleEvery) == 0);
+            long before = 0;
+            long start = 0;
+            if (sampled) {
+                before = mark() + separatorLength();
+                start = System.nanoTime();
+            }
+            writer.write(this, data);
+            if (sampled) {
+                long nanos = System.nanoTime() - start;
+                listener.encoded(data.getClass(), writer, nanos, mark() - before);
+            }
+        }
+
+        /**
+         * Flush the generator, but not the stream, to get an exact count of the output.
+         */
+        private long mark() throws IOException {
+            hold(true);
+            try {
+                generator.flush();
+            } finally {
+                hold(false);
+            }
+            return written();
+        }
+
+        private void hold(boolean hold) {
+            if (target != null) {
+                target.hold = hold;
+            } else {
+                chars.hold = hold;
+            }
+        }
+
+        /**
+         * @return the length of the separator the generator writes ahead of the next
+         *         value, so a value's size leaves it out; 0 where a pretty printer decides
+         */
+        private int separatorLength() {
+            if (!textual || generator.getPrettyPrinter() != null) {
+                return 0;
+            }
+            JsonStreamContext context = generator.getOutputContext();
+            if (context.inObject()) {
+                return 1; //the colon after the name
+            } else if (context.inArray()) {
+                return context.getEntryCount() > 0 ? 1 : 0;
+            }
+            return context.getEntryCount() > 0 && (skipped == null || !skipped.skip) ? rootSeparator : 0;
+        }
+
+        /*
+         * Raw values: already encoded json put into the output as one value. The
+         * generator adds the separator due before it and counts it, so it may appear
+         * anywhere a value may; the json itself is not checked. Text formats only.
+         */
+
+        public Session<OS> writeRawValue(String json) throws IOException {
+            generator.writeRawValue(json);
+            return this;
+        }
+
+        public Session<OS> writeRawValue(byte[] json, int off, int len) throws IOException {
+            Preconditions.checkState(textual, "Can't splice json into %s", factory.getFormatName());
+            generator.writeRawValue(""); //just the separator
+            splice(json, off, len);
+            return this;
+        }
+
+        /**
+         * @param json whose remaining bytes are spliced, leaving it at its limit
+         */
+        public Session<OS> writeRawValue(ByteBuffer json) throws IOException {
+            if (json.hasArray()) {
+                writeRawValue(json.array(), json.arrayOffset() + json.position(), json.remaining());
+                json.position(json.limit());
+            } else if (target == null) {
+                generator.writeRawValue(Charsets.UTF_8.decode(json).toString());
+            } else {
+                Preconditions.checkState(textual, "Can't splice json into %s", factory.getFormatName());
+                generator.writeRawValue("");
+                byte[] chunk = new byte[Math.min(json.remaining(), RAW_CHUNK)];
+                while (json.hasRemaining()) {
+                    int n = Math.min(chunk.length, json.remaining());
+                    json.get(chunk, 0, n);
+                    splice(chunk, 0, n);
                 }
-                w.write(this, data);
             }
             return this;
         }
 
+        JSONFactory jsonFactory() {
+            return JSONFactory.this;
+        }
+
         public Session<OS> writeFieldName(String name) throws IOException {
             generator.writeFieldName(name);
             return this;
         }
 
+        /**
+         * Write a field name encoded ahead of time, typically a
+         * {@link com.fasterxml.jackson.core.io.SerializedString} built once along with
+         * the writer, so that it is neither escaped nor encoded again per object.
+         */
+        public Session<OS> writeFieldName(SerializableString name) throws IOException {
+            generator.writeFieldName(name);
+            return this;
+        }
+
+        /**
+         * Write a map key as a field name, by its <code>toString()</code>. Strings are
+         * written as they are; enum keys and, if the factory caches keys, recurring keys
+         * of other types are written from names encoded once.
+         */
+        public Session<OS> writeKey(Object key) throws IOException {
+            if (key instanceof String) {
+                generator.writeFieldName((String) key);
+            } else if (keys != null && !(key instanceof Enum)) {
+                SerializableString name = keys.getIfPresent(key);
+                if (name == null) {
+                    keys.put(key, name = new SerializedString(key.toString()));
+                }
+                generator.writeFieldName(name);
+            } else {
+                writeName(key);
+            }
+            return this;
+        }
+
+        /**
+         * Write any object as a field name, by its <code>toString()</code>, enum
+         * constants from names encoded once. Unlike {@link #writeKey} nothing is cached,
+         * so the object may be mutable.
+         */
+        public Session<OS> writeName(Object o) throws IOException {
+            if (o instanceof Enum) {
+                generator.writeFieldName(Writers.nameOf((Enum) o));
+            } else {
+                generator.writeFieldName(o.toString());
+            }
+            return this;
+        }
+
         public Session<OS> writeNamedObject(String name, Object o) throws IOException {
             writeFieldName(name);
             writeObject(o);
             return this;
         }
 
+        public Session<OS> writeNamedObject(SerializableString name, Object o) throws IOException {
+            writeFieldName(name);
+            writeObject(o);
+            return this;
+        }
+
         public Session<OS> startObject() throws IOException {
             generator.writeStartObject();
             return this;
@@ -116,6 +554,47 @@ public class JSONFactory {
             return this;
         }
 
+        public Session<OS> writeBooleanField(String name, boolean value) throws IOException {
+            generator.writeBooleanField(name, value);
+            return this;
+        }
+
+        public Session<OS> writeNumberField(SerializableString name, int x) throws IOException {
+            generator.writeFieldName(name);
+            generator.writeNumber(x);
+            return this;
+        }
+
+        public Session<OS> writeNumberField(SerializableString name, long x) throws IOException {
+            generator.writeFieldName(name);
+            generator.writeNumber(x);
+            return this;
+        }
+
+        public Session<OS> writeNumberField(SerializableString name, float x) throws IOException {
+            generator.writeFieldName(name);
+            generator.writeNumber(x);
+            return this;
+        }
+
+        public Session<OS> writeNumberField(SerializableString name, double x) throws IOException {
+            generator.writeFieldName(name);
+            generator.writeNumber(x);
+            return this;
+        }
+
+        public Session<OS> writeBooleanField(SerializableString name, boolean value) throws IOException {
+            generator.writeFieldName(name);
+            generator.writeBoolean(value);
+            return this;
+        }
+
+        public Session<OS> writeStringField(SerializableString name, String value) throws IOException {
+            generator.writeFieldName(name);
+            generator.writeString(value);
+            return this;
+        }
+
         public Session<OS> writeNumber(Byte value) throws IOException {
             generator.writeNumber(value);
             return this;
@@ -146,6 +625,118 @@ public class JSONFactory {
             return this;
         }
 
+        public Session<OS> writeNumber(int value) throws IOException {
+            generator.writeNumber(value);
+            return this;
+        }
+
+        public Session<OS> writeNumber(long value) throws IOException {
+            generator.writeNumber(value);
+            return this;
+        }
+
+        public Session<OS> writeNumber(float value) throws IOException {
+            generator.writeNumber(value);
+            return this;
+        }
+
+        public Session<OS> writeNumber(double value) throws IOException {
+            generator.writeNumber(value);
+            return this;
+        }
+
+        /*
+         * Bulk array writes. Elements are formatted into a scratch buffer owned by the
+         * session and handed to the generator in runs, bypassing per-element boxing and
+         * separator bookkeeping. writeElements writes the comma separated elements
+         * alone, which is what parallel slices are made of. Auto-flush is checked each
+         * time a run leaves the scratch buffer.
+         */
+
+        public Session<OS> writeArray(byte[] a, int off, int len) throws IOException {
+            return writeArray(Elements.BYTE, a, off, len);
+        }
+
+        public Session<OS> writeArray(short[] a, int off, int len) throws IOException {
+            return writeArray(Elements.SHORT, a, off, len);
+        }
+
+        public Session<OS> writeArray(int[] a, int off, int len) throws IOException {
+            return writeArray(Elements.INT, a, off, len);
+        }
+
+        public Session<OS> writeArray(long[] a, int off, int len) throws IOException {
+            return writeArray(Elements.LONG, a, off, len);
+        }
+
+        public Session<OS> writeArray(float[] a, int off, int len) throws IOException {
+            return writeArray(Elements.FLOAT, a, off, len);
+        }
+
+        public Session<OS> writeArray(double[] a, int off, int len) throws IOException {
+            return writeArray(Elements.DOUBLE, a, off, len);
+        }
+
+        public Session<OS> writeArray(boolean[] a, int off, int len) throws IOException {
+            return writeArray(Elements.BOOLEAN, a, off, len);
+        }
+
+        Session<OS> writeArray(Elements kind, Object a, int off, int len) throws IOException {
+            Preconditions.checkPositionIndexes(off, off + len, Array.getLength(a));
+            generator.writeStartArray();
+            writeElements(kind, a, off, len);
+            generator.writeEndArray();
+            return this;
+        }
+
+        void writeElements(Elements kind, Object a, int off, int len) throws IOException {
+            if (!textual || kind.numeric() && generator.isEnabled(JsonGenerator.Feature.WRITE_NUMBERS_AS_STRINGS)) {
+                //binary formats and generators quoting numbers write their own elements
+                for (int i=off; i<off+len; i++) {
+                    kind.write(generator, a, i);
+                    checkpoint();
+                }
+                return;
+            }
+            char[] buf = scratch();
+            boolean quote = generator.isEnabled(JsonGenerator.Feature.QUOTE_NON_NUMERIC_NUMBERS);
+            int n = 0;
+            for (int i=off; i<off+len; i++) {
+                n = separate(buf, n, i > off);
+                n = kind.format(a, i, buf, n, quote);
+            }
+            drain(buf, n);
+        }
+
+        private char[] scratch() {
+            if (digits == null) {
+                digits = new char[BULK_SIZE];
+            }
+            return digits;
+        }
+
+        /**
+         * Flush the scratch buffer to the generator whenever it may not take another
+         * element, then append the separator if one is due.
+         */
+        private int separate(char[] buf, int n, boolean comma) throws IOException {
+            if (n > buf.length - Digits.MAX_LENGTH - 1) {
+                generator.writeRaw(buf, 0, n);
+                checkpoint();
+                n = 0;
+            }
+            if (comma) {
+                buf[n++] = ',';
+            }
+            return n;
+        }
+
+        private void drain(char[] buf, int n) throws IOException {
+            if (n > 0) {
+                generator.writeRaw(buf, 0, n);
+            }
+        }
+
         public Session<OS> writeBoolean(boolean value) throws IOException {
             generator.writeBoolean(value);
             return this;
@@ -156,32 +747,592 @@ public class JSONFactory {
             return this;
         }
 
+        /**
+         * Flush everything written, ending the compressed stream if any. A compressed
+         * session can't be written to after it is finished, until reset.
+         */
         public OS finish() throws IOException {
-            generator.flush();
+            if (deflating != null) {
+                Deflating d = deflating;
+                target.hold = true;
+                try {
+                    generator.flush();
+                } finally {
+                    target.hold = false;
+                    deflating = null;
+                    target.stream = (OutputStream) stream;
+                }
+                d.finish();
+            } else {
+                generator.flush();
+            }
             return stream;
         }
     }
 
-    private JSONFactory(Map<Class, Writer> writers) {
-        this.writers = writers;
-        this.factory = new com.fasterxml.jackson.core.JsonFactory();
+    private JSONFactory(Builder builder) {
+        this.writers = ImmutableMap.copyOf(builder.writers);
+        this.factory = builder.backend;
+        this.textual = JsonFactory.FORMAT_NAME_JSON.equals(factory.getFormatName());
+        this.cachedClasses = ImmutableSet.copyOf(builder.cachedClasses);
+        this.encoded = builder.maxEncoded > 0 && textual
+                ? CacheBuilder.newBuilder().weakKeys().maximumSize(builder.maxEncoded).recordStats()
+                        .<Object, byte[]>build()
+                : null;
+        this.omit = EnumSet.copyOf(builder.omit);
+        this.columnar = ImmutableSet.copyOf(builder.columnar);
+        this.omitByClass = ImmutableMap.copyOf(builder.omitByClass);
+        this.resolved = new ConcurrentHashMap<Class, Writer>();
+        for (Map.Entry<Class, Writer> e : writers.entrySet()) {
+            resolved.put(e.getKey(), compile(e.getKey(), e.getValue()));
+        }
+        this.maxRetained = builder.maxRetained;
+        this.listener = builder.listener;
+        this.sampleEvery = builder.sampleEvery;
+        for (Map.Entry<Class, Integer> e : builder.sizeHints.entrySet()) {
+            sizes.seed(e.getKey(), e.getValue());
+        }
+        this.keys = builder.maxKeys > 0
+                ? CacheBuilder.newBuilder().maximumSize(builder.maxKeys).<Object, SerializableString>build()
+                : null;
+        this.pool = builder.pool;
+        this.parallelThreshold = builder.parallelThreshold;
+    }
+
+    /**
+     * Session for one slice of a parallel array: its root values are the elements.
+     */
+    Session<Buffer> fragment(Buffer buffer) throws IOException {
+        Session<Buffer> session = new Session<Buffer>(buffer, false);
+        session.rootSeparator(COMMA);
+        return session;
     }
 
     public <OS extends OutputStream> Session<OS> prepare(OS os) throws IOException {
-        return new Session<OS>(os);
+        return new Session<OS>(os, false);
+    }
+
+    /**
+     * Prepare a session compressing its output to <code>os</code> as it goes;
+     * {@link Session#finish()} ends the compressed stream.
+     */
+    public <OS extends OutputStream> Session<OS> prepare(OS os, Compression compression) throws IOException {
+        Session<OS> session = new Session<OS>(os, false);
+        session.compress(Preconditions.checkNotNull(compression));
+        return session;
     }
 
+    /**
+     * Prepare a session writing into <code>buffer</code> from its current position on,
+     * chaining more buffers of the same kind should it overflow.
+     */
+    public Session<ByteBufferOutput> prepare(ByteBuffer buffer) throws IOException {
+        return prepare(new ByteBufferOutput(buffer));
+    }
+
+    public Session<ChannelOutput> prepare(WritableByteChannel channel) throws IOException {
+        return prepare(new ChannelOutput(channel));
+    }
+
+    /**
+     * Prepare a session writing characters straight into <code>out</code>, e.g. a
+     * reused <code>StringBuilder</code>, instead of UTF-8 bytes.
+     */
+    public <A extends Appendable> Session<A> prepareChars(A out) throws IOException {
+        checkTextual();
+        return new Session<A>(out, true);
+    }
+
+    /**
+     * Encode through this thread's pooled character session, so steady-state encoding
+     * allocates little beyond the returned string.
+     */
     public String encode(Object object) throws IOException {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        return encode(object, baos).toString();
+        checkTextual();
+        int hint = sizeHint(object);
+        Pooled p = acquire();
+        if (p == null) {
+            StringBuilder builder = encodeChars(object, new StringBuilder(Math.max(hint, 16)));
+            recordSize(object, builder.length());
+            return builder.toString();
+        }
+        boolean done = false;
+        try {
+            p.builder.ensureCapacity(hint);
+            p.chars(this).reset(p.builder).writeObject(object).finish();
+            String r = p.builder.toString();
+            recordSize(object, r.length());
+            done = true;
+            return r;
+        } finally {
+            release(p, done);
+        }
+    }
+
+    /**
+     * Encode to UTF-8 bytes through this thread's pooled session, for callers writing
+     * to sockets and the like.
+     */
+    public byte[] encodeBytes(Object object) throws IOException {
+        int hint = sizeHint(object);
+        Pooled p = acquire();
+        if (p == null) {
+            byte[] r = encode(object, new ByteArrayOutputStream(Math.max(hint, 32))).toByteArray();
+            recordSize(object, r.length);
+            return r;
+        }
+        boolean done = false;
+        try {
+            p.buffer.presize(hint);
+            p.bytes(this).reset(p.buffer).writeObject(object).finish();
+            byte[] r = p.buffer.toByteArray();
+            recordSize(object, r.length);
+            done = true;
+            return r;
+        } finally {
+            release(p, done);
+        }
+    }
+
+    /**
+     * Encode to <code>compression</code>'s format, see {@link Compression}.
+     */
+    public byte[] encodeBytes(Object object, Compression compression) throws IOException {
+        Pooled p = acquire();
+        if (p == null) {
+            return encode(object, new ByteArrayOutputStream(), compression).toByteArray();
+        }
+        boolean done = false;
+        try {
+            p.bytes(this).reset(p.buffer, compression).writeObject(object).finish();
+            byte[] r = p.buffer.toByteArray();
+            done = true;
+            return r;
+        } finally {
+            release(p, done);
+        }
     }
 
     public <OS extends OutputStream> OS encode(Object object, OS os) throws IOException {
-        return prepare(os)
+        return encode(object, os, null);
+    }
+
+    /**
+     * @param compression to compress the json on its way to <code>os</code>, or null
+     */
+    public <OS extends OutputStream> OS encode(Object object, OS os, Compression compression) throws IOException {
+        Pooled p = acquire();
+        if (p == null) {
+            return (compression == null ? prepare(os) : prepare(os, compression))
+                    .writeObject(object)
+                    .finish();
+        }
+        boolean done = false;
+        try {
+            p.bytes(this).reset(os, compression).writeObject(object).finish();
+            done = true;
+            return os;
+        } finally {
+            release(p, done);
+        }
+    }
+
+    public ByteBufferOutput encode(Object object, ByteBuffer buffer) throws IOException {
+        return encode(object, new ByteBufferOutput(buffer));
+    }
+
+    public <C extends WritableByteChannel> C encode(Object object, C channel) throws IOException {
+        encode(object, new ChannelOutput(channel));
+        return channel;
+    }
+
+    /**
+     * Encode <code>records</code> one after another onto a single generator, each
+     * followed by <code>separator</code> - "\n" gives line-delimited JSON.
+     */
+    public <OS extends OutputStream> OS encodeAll(Iterable<?> records, OS os, String separator) throws IOException {
+        return encodeAll(records, os, separator, 0);
+    }
+
+    public <OS extends OutputStream> OS encodeAll(Iterable<?> records, OS os, String separator,
+                                                  int flushRecords) throws IOException {
+        Session<OS> session = prepare(os).separateRecords(separator, flushRecords);
+        for (Object record : records) {
+            session.writeRecord(record);
+        }
+        return session.finish();
+    }
+
+    public <A extends Appendable> A encodeChars(Object object, A out) throws IOException {
+        return prepareChars(out)
                 .writeObject(object)
                 .finish();
     }
 
+    /**
+     * Expected size of encoding an instance of <code>cls</code>, learned from what this
+     * factory encoded so far or seeded by {@link Builder#sizeHint}; 0 when nothing is
+     * known. Callers can use it to size their own buffers before encoding.
+     */
+    public int sizeHint(Class cls) {
+        return sizes.get(cls);
+    }
+
+    private int sizeHint(Object object) {
+        return object == null ? 0 : sizes.get(object.getClass());
+    }
+
+    private void recordSize(Object object, long size) {
+        if (object != null) {
+            sizes.record(object.getClass(), size);
+        }
+    }
+
+    /**
+     * Start a feed of patches between snapshots of the same entities, see
+     * {@link DiffEncoder}.
+     */
+    public DiffEncoder diffEncoder() throws IOException {
+        checkTextual();
+        return new DiffEncoder(this);
+    }
+
+    JsonFactory backend() {
+        return factory;
+    }
+
+    private void checkTextual() {
+        Preconditions.checkState(textual, "%s is a binary format, encode to bytes instead",
+                factory.getFormatName());
+    }
+
+    /**
+     * @return this thread's pooled sessions, or null if they are already in use further
+     *         up the stack (a writer encoding on its own) or the format can't have them,
+     *         in which case callers go unpooled
+     */
+    private Pooled acquire() throws IOException {
+        if (!textual) {
+            return null; //binary generators can't be reset
+        }
+        Pooled p = pooled.get();
+        if (p == null) {
+            p = new Pooled(factory);
+            pooled.set(p);
+        } else if (p.busy) {
+            return null;
+        }
+        p.busy = true;
+        return p;
+    }
+
+    private void release(Pooled p, boolean done) {
+        if (done) {
+            p.target.stream = p.buffer; //don't pin the caller's stream
+            p.buffer.recycle(maxRetained);
+            if (p.builder.capacity() > maxRetained) {
+                p.builder = new StringBuilder(Builder.DEFAULT_BUFFER_SIZE);
+            } else {
+                p.builder.setLength(0);
+            }
+            p.charTarget.out = p.builder;
+            p.busy = false;
+        } else {
+            pooled.remove(); //a failed write leaves the generator mid-value
+        }
+    }
+
+    /**
+     * Per-thread generators and buffers. Static, holding nothing of the factory, so the
+     * thread-local doesn't keep a discarded factory reachable; sessions are wrapped
+     * around it per encode.
+     */
+    static private class Pooled {
+        private final Buffer buffer = new Buffer(Builder.DEFAULT_BUFFER_SIZE);
+        private final Target target = new Target(buffer);
+        private final JsonGenerator bytes;
+        private StringBuilder builder = new StringBuilder(Builder.DEFAULT_BUFFER_SIZE);
+        private final CharTarget charTarget = new CharTarget(builder);
+        private final JsonGenerator chars;
+        private final char[] digits = new char[BULK_SIZE];
+        private boolean busy;
+
+        private Pooled(JsonFactory factory) throws IOException {
+            this.bytes = factory.createGenerator(target);
+            this.chars = factory.createGenerator(charTarget);
+        }
+
+        private Session<OutputStream> bytes(JSONFactory factory) {
+            return factory.new Session<OutputStream>(buffer, target, null, bytes, digits);
+        }
+
+        private Session<Appendable> chars(JSONFactory factory) {
+            return factory.new Session<Appendable>(builder, null, charTarget, chars, digits);
+        }
+    }
+
+    /**
+     * Root value separator that comes out empty the first time the generator asks for
+     * it, then as <code>value</code>. Generators ask once per separator written.
+     */
+    static private class SkippedSeparator implements SerializableString {
+        static private final SerializableString EMPTY = new SerializedString("");
+
+        private final SerializableString value;
+        private boolean skip;
+
+        private SkippedSeparator(String value) {
+            this.value = new SerializedString(value);
+        }
+
+        private SerializableString next() {
+            if (skip) {
+                skip = false;
+                return EMPTY;
+            }
+            return value;
+        }
+
+        @Override
+        public String getValue() {
+            return next().getValue();
+        }
+
+        @Override
+        public int charLength() {
+            return next().charLength();
+        }
+
+        @Override
+        public char[] asQuotedChars() {
+            return next().asQuotedChars();
+        }
+
+        @Override
+        public byte[] asUnquotedUTF8() {
+            return next().asUnquotedUTF8();
+        }
+
+        @Override
+        public byte[] asQuotedUTF8() {
+            return next().asQuotedUTF8();
+        }
+
+        @Override
+        public int appendQuotedUTF8(byte[] buffer, int offset) {
+            return next().appendQuotedUTF8(buffer, offset);
+        }
+
+        @Override
+        public int appendQuoted(char[] buffer, int offset) {
+            return next().appendQuoted(buffer, offset);
+        }
+
+        @Override
+        public int appendUnquotedUTF8(byte[] buffer, int offset) {
+            return next().appendUnquotedUTF8(buffer, offset);
+        }
+
+        @Override
+        public int appendUnquoted(char[] buffer, int offset) {
+            return next().appendUnquoted(buffer, offset);
+        }
+
+        @Override
+        public int writeQuotedUTF8(OutputStream out) throws IOException {
+            return next().writeQuotedUTF8(out);
+        }
+
+        @Override
+        public int writeUnquotedUTF8(OutputStream out) throws IOException {
+            return next().writeUnquotedUTF8(out);
+        }
+
+        @Override
+        public int putQuotedUTF8(ByteBuffer buffer) throws IOException {
+            return next().putQuotedUTF8(buffer);
+        }
+
+        @Override
+        public int putUnquotedUTF8(ByteBuffer buffer) throws IOException {
+            return next().putUnquotedUTF8(buffer);
+        }
+    }
+
+    /**
+     * Stream a session's generator writes to, so the session can be moved to another
+     * stream without creating a new generator.
+     */
+    static private class Target extends OutputStream {
+        private OutputStream stream;
+        private long count;
+        private boolean hold; //keep generator flushes from reaching the stream
+
+        private Target(OutputStream stream) {
+            this.stream = stream;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            stream.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            stream.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (!hold) {
+                stream.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            stream.close();
+        }
+    }
+
+    /**
+     * Character counterpart of {@link Target}, appending to any <code>Appendable</code>
+     * and taking the copy-free route for builders and writers.
+     */
+    static private class CharTarget extends java.io.Writer {
+        private Appendable out;
+        private long count;
+        private boolean hold; //keep generator flushes from reaching the appendable
+
+        private CharTarget(Appendable out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            if (out instanceof StringBuilder) {
+                ((StringBuilder) out).append(cbuf, off, len);
+            } else if (out instanceof java.io.Writer) {
+                ((java.io.Writer) out).write(cbuf, off, len);
+            } else {
+                out.append(CharBuffer.wrap(cbuf, off, len));
+            }
+            count += len;
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            out.append(str, off, off + len);
+            count += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (!hold && out instanceof Flushable) {
+                ((Flushable) out).flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (out instanceof Closeable) {
+                ((Closeable) out).close();
+            }
+        }
+    }
+
+    /**
+     * Find the writer for instances of <code>cls</code>. Lookups are lock-free; the
+     * first miss of a class walks its interfaces and ancestors and memoizes the result,
+     * so concurrent sessions of one factory may race on a miss but always agree.
+     */
+    Writer resolve(Class cls) {
+        Writer w = resolved.get(cls);
+        if (w == null) {
+            if (cls.isArray()) {
+                w = Writers.ARRAY; //primitive arrays should have been shot ahead
+            } else {
+                w = searchInterfaces(cls);
+                if (w == null) {
+                    w = searchAncestors(cls);
+                    Preconditions.checkState(w != null,
+                            "Don't know how to write class %s as json",
+                            cls.getName());
+                }
+            }
+            w = compile(cls, w);
+            Writer prev = resolved.putIfAbsent(cls, w);
+            if (prev != null) {
+                w = prev;
+            }
+            if (listener != null) {
+                listener.resolved(cls, w);
+            }
+        }
+        return w;
+    }
+
+    /**
+     * Settle what the writer of <code>cls</code> does per value: members it omits,
+     * output caching.
+     */
+    private Writer compile(Class cls, Writer w) {
+        Set<Omit> policy = omitByClass.containsKey(cls) ? omitByClass.get(cls) : omit;
+        if (!policy.isEmpty()) {
+            if (w instanceof AccessorWriter) {
+                w = ((AccessorWriter) w).omitting(new Omission(policy));
+            } else if (w == Writers.MAP) {
+                w = Writers.map(new Omission(policy));
+            } else if (w == Writers.ENUM_MAP) {
+                w = Writers.enumMap(new Omission(policy));
+            } else if (w == Writers.STRING_MAP) {
+                w = Writers.stringMap(new Omission(policy));
+            } else if (w == Writers.MAP_REVERSED) {
+                w = Writers.mapReversed(new Omission(policy));
+            }
+        }
+        return cacheable(cls, w);
+    }
+
+    private Writer cacheable(Class cls, Writer w) {
+        return encoded != null && cachedClasses.contains(cls) ? new CachingWriter(w) : w;
+    }
+
+    /**
+     * Hit and miss counts of the encoded-output cache, see {@link Builder#cacheEncoded}.
+     */
+    public CacheStats encodedStats() {
+        return encoded != null ? encoded.stats() : new CacheStats(0, 0, 0, 0, 0, 0);
+    }
+
+    /**
+     * Writes each instance once, then splices the remembered UTF-8 back in raw; byte
+     * sessions copy it to the output without decoding it.
+     */
+    private class CachingWriter implements Writer<Object> {
+        private final Writer writer;
+
+        private CachingWriter(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked") //writer was resolved for the class of value
+        public void write(Session session, Object value) throws IOException {
+            byte[] json = encoded.getIfPresent(value);
+            if (json == null) {
+                Buffer buffer = new Buffer(64);
+                Session<Buffer> s = new Session<Buffer>(buffer, false);
+                writer.write(s, value);
+                s.finish();
+                encoded.put(value, json = buffer.toByteArray());
+            }
+            session.writeRawValue(json, 0, json.length);
+        }
+    }
+
     private Writer searchAncestors(Class cls) {
         for (Class p = cls.getSuperclass(); p!=null; p = p.getSuperclass()) {
             Writer w = writers.get(p);
@@ -219,10 +1370,179 @@ public class JSONFactory {
     }
 
     static public class Builder {
+        static final int DEFAULT_BUFFER_SIZE = 512;
+        static final int DEFAULT_MAX_RETAINED = 64 * 1024;
+        static final int DEFAULT_SAMPLE_EVERY = 64;
+
         private final Map<Class, Writer> writers = new HashMap<Class, Writer>();
+        private int maxRetained = DEFAULT_MAX_RETAINED;
+        private int maxKeys;
+        private final Set<Class> cachedClasses = new HashSet<Class>();
+        private int maxEncoded;
+        private EncodeListener listener;
+        private int sampleEvery = 1;
+        private final Map<Class, Integer> sizeHints = new HashMap<Class, Integer>();
+        private final Set<Omit> omit = EnumSet.noneOf(Omit.class);
+        private final Map<Class, Set<Omit>> omitByClass = new HashMap<Class, Set<Omit>>();
+        private final Set<Class> columnar = new HashSet<Class>();
+        private ForkJoinPool pool;
+        private int parallelThreshold;
+        private JsonFactory backend = new JsonFactory();
 
         public JSONFactory finish() {
-            return new JSONFactory(writers);
+            return new JSONFactory(this);
+        }
+
+        /**
+         * Cap the size of the per-thread output buffer kept between encodes. A buffer
+         * that grew beyond it while encoding a large payload is released afterwards.
+         */
+        public Builder retainBuffer(int maxBytes) {
+            Preconditions.checkArgument(maxBytes >= DEFAULT_BUFFER_SIZE);
+            this.maxRetained = maxBytes;
+            return this;
+        }
+
+        /**
+         * Keep up to <code>maxKeys</code> map keys, least recently used out first, along
+         * with their encoded names, so maps over a small recurring vocabulary of keys
+         * don't have their keys converted and escaped entry after entry. Keys have to be
+         * immutable; they are held strongly until evicted. String and enum keys don't
+         * take part, they are written as they are and from per-enum names.
+         */
+        public Builder cacheKeys(int maxKeys) {
+            Preconditions.checkArgument(maxKeys > 0);
+            this.maxKeys = maxKeys;
+            return this;
+        }
+
+        /**
+         * Remember the output of instances of exactly the given classes, which have to
+         * be immutable, and splice it back in raw whenever the same instance is encoded
+         * again. Up to <code>maxEntries</code> instances are held, weakly, least recently
+         * used out first; see {@link JSONFactory#encodedStats()} for how well it does.
+         * Binary backends don't cache.
+         */
+        public Builder cacheEncoded(int maxEntries, Class... classes) {
+            Preconditions.checkArgument(maxEntries > 0);
+            this.maxEncoded = maxEntries;
+            cachedClasses.addAll(Arrays.asList(classes));
+            return this;
+        }
+
+        /**
+         * Leave members out of objects written by reflective writers and of maps
+         * written by {@link Writers#MAP}, {@link Writers#STRING_MAP},
+         * {@link Writers#ENUM_MAP} or {@link Writers#MAP_REVERSED}, unless the class has policies of its own. The
+         * policies are compiled into each class's writer when it is first resolved.
+         */
+        public Builder omit(Omit... policies) {
+            omit.clear();
+            omit.addAll(Arrays.asList(policies));
+            return this;
+        }
+
+        /**
+         * Write collections whose elements are all exactly of one of <code>classes</code>
+         * column by column: an object holding, for each member, the array of its values,
+         * e.g. <code>{"id":[1,2],"name":["a","b"]}</code>. Field names are then written
+         * once per collection rather than once per element, and primitive columns go
+         * out through the bulk array writes. The classes must be registered reflectively
+         * (<code>forFields</code>, <code>forClassMethods</code> and the like); omit
+         * policies don't apply to columns.
+         */
+        public Builder columnar(Class... classes) {
+            columnar.addAll(Arrays.asList(classes));
+            return this;
+        }
+
+        /**
+         * Policies for <code>cls</code> in place of the factory's; none to write every
+         * member of it.
+         */
+        public Builder omit(Class cls, Omit... policies) {
+            Set<Omit> set = EnumSet.noneOf(Omit.class);
+            set.addAll(Arrays.asList(policies));
+            omitByClass.put(Preconditions.checkNotNull(cls), set);
+            return this;
+        }
+
+        /**
+         * Start the size estimate for <code>cls</code> at <code>size</code> instead of
+         * learning it from the first encode.
+         */
+        public Builder sizeHint(Class cls, int size) {
+            Preconditions.checkArgument(size >= 0);
+            sizeHints.put(Preconditions.checkNotNull(cls), size);
+            return this;
+        }
+
+        /**
+         * Report values written, with the time and bytes they took, and every writer
+         * lookup missing the cache to <code>listener</code>, e.g. an
+         * {@link EncodeMetrics}. One value in {@value #DEFAULT_SAMPLE_EVERY} is
+         * reported, see {@link #instrument(EncodeListener, int)}.
+         */
+        public Builder instrument(EncodeListener listener) {
+            return instrument(listener, DEFAULT_SAMPLE_EVERY);
+        }
+
+        /**
+         * Report each value written with probability 1/<code>sampleEvery</code>, so
+         * short-lived sessions and payloads of any shape are sampled alike; 1 reports
+         * every value. Counting a reported value's bytes, its separator left out, flushes
+         * the generator before and after it, pushing its buffer into the stream but not
+         * flushing the stream itself: one stream or channel write per reported value,
+         * which sampling keeps affordable in production.
+         */
+        public Builder instrument(EncodeListener listener, int sampleEvery) {
+            Preconditions.checkArgument(sampleEvery > 0);
+            this.listener = Preconditions.checkNotNull(listener);
+            this.sampleEvery = sampleEvery;
+            return this;
+        }
+
+        /**
+         * Produce output with <code>backend</code> instead of plain JSON text, e.g. a
+         * configured <code>JsonFactory</code> or one for a binary format such as
+         * <code>new SmileFactory()</code> from the optional jackson-dataformat-smile. Writers are
+         * unaffected; with a binary format encodings to characters are unavailable and
+         * parallel slicing is off.
+         */
+        public Builder backend(JsonFactory backend) {
+            this.backend = Preconditions.checkNotNull(backend);
+            return this;
+        }
+
+        /**
+         * Encode Lists, Object[] and primitive arrays of at least <code>threshold</code>
+         * elements in parallel slices on the common fork-join pool.
+         */
+        public Builder parallel(int threshold) {
+            return parallel(ForkJoinPool.commonPool(), threshold);
+        }
+
+        public Builder parallel(ForkJoinPool pool, int threshold) {
+            Preconditions.checkArgument(threshold > 0);
+            this.pool = pool;
+            this.parallelThreshold = threshold;
+            return this;
+        }
+
+        public Builder forRegistry(WriterRegistry registry) {
+            registry.register(this);
+            return this;
+        }
+
+        /**
+         * Register the writers of every {@link WriterRegistry} on the class path, notably
+         * those generated for {@link JSONWritable} classes.
+         */
+        public Builder forGenerated() {
+            for (WriterRegistry registry : ServiceLoader.load(WriterRegistry.class)) {
+                registry.register(this);
+            }
+            return this;
         }
 
         public <T> Builder forClass(Class<T> cls, Writer<T> writer) {
@@ -264,23 +1584,11 @@ public class JSONFactory {
         }
 
         public Builder forClassFields(Class cls, final Field[] fields) {
-            for (Field f : fields) {
-                f.setAccessible(true);
+            Accessor[] accessors = new Accessor[fields.length];
+            for (int i=0; i<accessors.length; i++) {
+                accessors[i] = Accessor.forField(fields[i]);
             }
-            writers.put(cls, new Writer<Object>() {
-                @Override
-                public void write(Session session, Object value) throws IOException {
-                    session.startObject();
-                    for (Field field : fields) {
-                        try {
-                            session.writeNamedObject(field.getName(), field.get(value));
-                        } catch (IllegalAccessException e) {
-                            throw new RuntimeException(e);
-                        }
-                    }
-                    session.endObject();
-                }
-            });
+            writers.put(cls, forAccessors(accessors));
             return this;
         }
 
@@ -301,50 +1609,64 @@ public class JSONFactory {
         }
 
         public Builder forClassMethods(Class cls, final Method[] methods) {
-            for (Method m : methods) {
-                m.setAccessible(true);
+            Accessor[] accessors = new Accessor[methods.length];
+            for (int i=0; i<accessors.length; i++) {
+                accessors[i] = Accessor.forMethod(methods[i]);
             }
-            writers.put(cls, new Writer<Object>() {
+            writers.put(cls, forAccessors(accessors));
+            return this;
+        }
+
+        static private Writer<Object> forAccessors(final Accessor[] accessors) {
+            return new AccessorWriter(accessors);
+        }
+
+        public <T> Builder extratAsArray(Class<T> cls, final Extractor<T> extractor) {
+            return extratAsArray(cls, new PushExtractor<T>() {
                 @Override
-                public void write(Session session, Object value) throws IOException {
-                    session.startObject();
-                    for (Method method : methods) {
-                        try {
-                            session.writeNamedObject(method.getName(), method.invoke(value));
-                        } catch (IllegalAccessException e) {
-                            throw new RuntimeException(e);
-                        } catch (InvocationTargetException e) {
-                            throw new RuntimeException(e);
-                        }
+                public void extract(T object, Session session) throws IOException {
+                    for (Object obj : extractor.extract(object)) {
+                        session.writeObject(obj);
                     }
-                    session.endObject();
                 }
             });
-            return this;
         }
 
-        public <T> Builder extratAsArray(Class<T> cls, final Extractor<T> extractor) {
+        /**
+         * @param extractor returns names and values alternately, name first
+         */
+        public <T> Builder extratAsObject(Class<T> cls, final Extractor<T> extractor) {
+            return extratAsObject(cls, new PushExtractor<T>() {
+                @Override
+                public void extract(T object, Session session) throws IOException {
+                    Object[] members = extractor.extract(object);
+                    Preconditions.checkState(members.length % 2 == 0,
+                            "%s extracted a name without value", extractor);
+                    for (int i=0; i<members.length; i+=2) {
+                        session.writeNamedObject(String.valueOf(members[i]), members[i + 1]);
+                    }
+                }
+            });
+        }
+
+        public <T> Builder extratAsArray(Class<T> cls, final PushExtractor<T> extractor) {
             writers.put(cls, new Writer<T>() {
                 @Override
                 public void write(Session session, T value) throws IOException {
                     session.startArray();
-                    for (Object obj : extractor.extract(value)) {
-                        session.writeObject(obj);
-                    }
+                    extractor.extract(value, session);
                     session.endArray();
                 }
             });
             return this;
         }
 
-        public <T> Builder extratAsObject(Class<T> cls, final Extractor<T> extractor) {
+        public <T> Builder extratAsObject(Class<T> cls, final PushExtractor<T> extractor) {
             writers.put(cls, new Writer<T>() {
                 @Override
                 public void write(Session session, T value) throws IOException {
                     session.startObject();
-                    for (Object obj : extractor.extract(value)) {
-                        session.writeObject(obj);
-                    }
+                    extractor.extract(value, session);
                     session.endObject();
                 }
             });
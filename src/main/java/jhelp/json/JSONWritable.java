@@ -0,0 +1,21 @@
+package jhelp.json;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Have a {@link Writer} generated at compile time for the annotated class, see
+ * {@link jhelp.json.processor.WritableProcessor}. The writer writes the instance fields
+ * of the class and its ancestors, transient ones excepted, as a json object.
+ * <p>
+ * The processor isn't registered for discovery, so it doesn't run in every compile that
+ * has jhelp on its class path; enable it with
+ * <code>-processor jhelp.json.processor.WritableProcessor</code>, or in Maven with
+ * <code>&lt;annotationProcessors&gt;</code> of the compiler plugin.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface JSONWritable {
+}
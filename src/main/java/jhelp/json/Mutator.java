@@ -0,0 +1,122 @@
+package jhelp.json;
+
+import com.google.common.base.Throwables;
+import com.google.common.primitives.Primitives;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+
+/**
+ * Decoding counterpart of {@link Accessor}: reads the value the session is on into one
+ * field of an object, through a setter handle typed to the field so primitives are never
+ * boxed. Fields a handle can't be made for, such as final ones, are set reflectively.
+ */
+abstract class Mutator {
+    final String name;
+
+    Mutator(String name) {
+        this.name = name;
+    }
+
+    abstract void read(JSONDecoder.Session session, Object owner) throws IOException;
+
+    static Mutator forField(Field field) {
+        field.setAccessible(true);
+        MethodHandle handle;
+        try {
+            handle = MethodHandles.lookup().unreflectSetter(field);
+        } catch (IllegalAccessException e) {
+            return new ReflectedField(field);
+        }
+        Class<?> type = field.getType();
+        Kind kind;
+        if (type == int.class || type == short.class || type == byte.class) {
+            kind = Kind.INT;
+        } else if (type == long.class) {
+            kind = Kind.LONG;
+        } else if (type == float.class || type == double.class) {
+            kind = Kind.DOUBLE;
+        } else if (type == boolean.class) {
+            kind = Kind.BOOLEAN;
+        } else {
+            kind = Kind.OBJECT;
+        }
+        //narrowing is explicit, as for a cast in source; references are cast and unboxed
+        return new HandleMutator(field.getName(), kind, Primitives.wrap(type),
+                MethodHandles.explicitCastArguments(handle, MethodType.methodType(void.class, Object.class, kind.type)));
+    }
+
+    /**
+     * The type a setter handle is made to take, which the session reads the value as.
+     */
+    private enum Kind {
+        INT(int.class), LONG(long.class), DOUBLE(double.class), BOOLEAN(boolean.class), OBJECT(Object.class);
+
+        private final Class<?> type;
+
+        Kind(Class<?> type) {
+            this.type = type;
+        }
+    }
+
+    static private class HandleMutator extends Mutator {
+        private final Kind kind;
+        private final Class<?> type; //boxed, as objects are read
+        private final MethodHandle handle;
+
+        HandleMutator(String name, Kind kind, Class<?> type, MethodHandle handle) {
+            super(name);
+            this.kind = kind;
+            this.type = type;
+            this.handle = handle;
+        }
+
+        @Override
+        void read(JSONDecoder.Session session, Object owner) throws IOException {
+            try {
+                switch (kind) { //one exact invocation per type the handle may take
+                    case INT:
+                        handle.invokeExact(owner, session.readInt());
+                        break;
+                    case LONG:
+                        handle.invokeExact(owner, session.readLong());
+                        break;
+                    case DOUBLE:
+                        handle.invokeExact(owner, session.readDouble());
+                        break;
+                    case BOOLEAN:
+                        handle.invokeExact(owner, session.readBoolean());
+                        break;
+                    default:
+                        Object value = session.read(type);
+                        handle.invokeExact(owner, value);
+                }
+            } catch (Throwable t) {
+                Throwables.propagateIfInstanceOf(t, IOException.class);
+                throw Throwables.propagate(t);
+            }
+        }
+    }
+
+    static private class ReflectedField extends Mutator {
+        private final Field field;
+
+        ReflectedField(Field field) {
+            super(field.getName());
+            this.field = field;
+        }
+
+        @Override
+        void read(JSONDecoder.Session session, Object owner) throws IOException {
+            Class<?> type = Primitives.wrap(field.getType());
+            try {
+                field.set(owner, session.read(type));
+            } catch (IllegalAccessException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
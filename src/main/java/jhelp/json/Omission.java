@@ -0,0 +1,56 @@
+package jhelp.json;
+
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A set of {@link Omit} policies, resolved once into flags when writers are compiled
+ * rather than looked up per value.
+ */
+class Omission {
+    final boolean nulls;
+    final boolean defaults;
+    final boolean empty;
+
+    Omission(Set<Omit> omit) {
+        this.nulls = omit.contains(Omit.NULLS);
+        this.defaults = omit.contains(Omit.DEFAULTS);
+        this.empty = omit.contains(Omit.EMPTY);
+    }
+
+    boolean omits(Object value) {
+        if (value == null) {
+            return nulls;
+        }
+        if (defaults) {
+            if (value instanceof Integer || value instanceof Long || value instanceof Short
+                    || value instanceof Byte) {
+                return ((Number) value).longValue() == 0;
+            } else if (value instanceof Double || value instanceof Float) {
+                return ((Number) value).doubleValue() == 0;
+            } else if (value instanceof BigDecimal) {
+                return ((BigDecimal) value).signum() == 0;
+            } else if (value instanceof BigInteger) {
+                return ((BigInteger) value).signum() == 0;
+            } else if (value instanceof Boolean) {
+                return !(Boolean) value;
+            } else if (value instanceof Character) {
+                return (Character) value == 0;
+            }
+        }
+        if (empty) {
+            if (value instanceof Collection) {
+                return ((Collection) value).isEmpty();
+            } else if (value instanceof Map) {
+                return ((Map) value).isEmpty();
+            } else if (value.getClass().isArray()) {
+                return Array.getLength(value) == 0;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,20 @@
+package jhelp.json;
+
+/**
+ * Members a factory leaves out of objects, see {@link JSONFactory.Builder#omit}.
+ */
+public enum Omit {
+    /**
+     * Members that are null.
+     */
+    NULLS,
+    /**
+     * Numbers that are zero, booleans that are false and characters that are '\0',
+     * primitive or boxed.
+     */
+    DEFAULTS,
+    /**
+     * Collections, maps and arrays without elements.
+     */
+    EMPTY
+}
@@ -0,0 +1,141 @@
+package jhelp.json;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fork-join encoding of large arrays. The elements are cut into slices, each encoded by
+ * a task into a buffer of its own with the same factory, and the buffers are spliced
+ * into the session in order. All fragments of one array may be held in memory at once;
+ * their buffers are pooled across arrays, factories and threads.
+ */
+final class Parallel {
+    static private final byte[] COMMA = {','};
+    static private final int FRAGMENT_SIZE = 8 * 1024;
+    static private final int MAX_POOLED = 4 * Runtime.getRuntime().availableProcessors();
+
+    static private final Queue<Buffer> FRAGMENTS = new ConcurrentLinkedQueue<Buffer>();
+    static private final AtomicInteger POOLED = new AtomicInteger();
+
+    /**
+     * Writes elements <code>from</code> (inclusive) to <code>to</code> (exclusive) of an
+     * array, comma separated, into a fragment session.
+     */
+    interface Slice {
+        void write(JSONFactory.Session session, int from, int to) throws IOException;
+    }
+
+    private Parallel() {
+    }
+
+    static void write(JSONFactory factory, ForkJoinPool pool, JSONFactory.Session session,
+                      Object value, int length) throws IOException {
+        Slice slice = slice(value);
+        int slices = Math.max(1, pool.getParallelism() * 2);
+        int size = (length + slices - 1) / slices;
+        List<Task> tasks = new ArrayList<Task>(slices);
+        for (int from=0; from<length; from+=size) {
+            Task task = new Task(factory, slice, from, Math.min(from + size, length));
+            if (ForkJoinTask.getPool() == pool) {
+                task.fork();
+            } else {
+                pool.execute(task); //not whatever pool the caller runs in
+            }
+            tasks.add(task);
+        }
+        try {
+            for (int i=0; i<tasks.size(); i++) {
+                Buffer fragment = tasks.get(i).join();
+                if (i > 0) {
+                    session.splice(COMMA, 0, 1);
+                }
+                session.splice(fragment.array(), 0, fragment.size());
+                release(fragment);
+                session.checkpoint();
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            for (Task task : tasks) {
+                task.cancel(false);
+            }
+        }
+    }
+
+    static private Buffer fragment() {
+        Buffer b = FRAGMENTS.poll();
+        if (b == null) {
+            return new Buffer(FRAGMENT_SIZE);
+        }
+        POOLED.decrementAndGet();
+        return b;
+    }
+
+    static private void release(Buffer b) {
+        if (POOLED.incrementAndGet() <= MAX_POOLED) {
+            b.recycle(JSONFactory.Builder.DEFAULT_MAX_RETAINED);
+            FRAGMENTS.offer(b);
+        } else {
+            POOLED.decrementAndGet();
+        }
+    }
+
+    static private Slice slice(final Object value) {
+        final Elements kind = Elements.of(value);
+        if (kind != null) {
+            return new Slice() {
+                @Override
+                public void write(JSONFactory.Session session, int from, int to) throws IOException {
+                    session.writeElements(kind, value, from, to - from);
+                }
+            };
+        } else if (value instanceof Object[] || value instanceof List) {
+            final List<?> list = value instanceof List ? (List<?>) value : Arrays.asList((Object[]) value);
+            return new Slice() {
+                @Override
+                public void write(JSONFactory.Session session, int from, int to) throws IOException {
+                    for (int i=from; i<to; i++) {
+                        session.writeObject(list.get(i));
+                    }
+                }
+            };
+        }
+        throw new IllegalArgumentException("Can't slice " + value.getClass().getName());
+    }
+
+    static private class Task extends RecursiveTask<Buffer> {
+        private final JSONFactory factory;
+        private final Slice slice;
+        private final int from;
+        private final int to;
+
+        private Task(JSONFactory factory, Slice slice, int from, int to) {
+            this.factory = factory;
+            this.slice = slice;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Buffer compute() {
+            Buffer fragment = fragment();
+            try {
+                JSONFactory.Session session = factory.fragment(fragment);
+                slice.write(session, from, to);
+                session.finish();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return fragment;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package jhelp.json;
+
+import java.io.IOException;
+
+/**
+ * Writes the members of an object straight into the session, with its typed methods:
+ * <code>writeNumber(int)</code> and friends for array elements,
+ * <code>writeNumberField(name, int)</code> and friends for named members. Unlike
+ * {@link Extractor} nothing is collected into an array nor boxed on the way.
+ * The enclosing array or object is opened and closed by the registered writer.
+ */
+public interface PushExtractor<F> {
+    void extract(F object, JSONFactory.Session session) throws IOException;
+}
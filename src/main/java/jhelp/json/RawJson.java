@@ -0,0 +1,67 @@
+package jhelp.json;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Json encoded elsewhere, e.g. a fragment out of a cache, to be spliced into a session
+ * as one value without being parsed; see {@link Writers#RAW}. The bytes are UTF-8 and
+ * are neither copied nor checked.
+ */
+public class RawJson {
+    private final byte[] bytes;
+    private final int offset;
+    private final int length;
+    private final ByteBuffer buffer;
+
+    private RawJson(byte[] bytes, int offset, int length, ByteBuffer buffer) {
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+        this.buffer = buffer;
+    }
+
+    static public RawJson of(byte[] bytes) {
+        return of(bytes, 0, bytes.length);
+    }
+
+    static public RawJson of(byte[] bytes, int offset, int length) {
+        Preconditions.checkPositionIndexes(offset, offset + length, bytes.length);
+        return new RawJson(bytes, offset, length, null);
+    }
+
+    /**
+     * @param buffer whose remaining bytes are the json; its position is left alone
+     */
+    static public RawJson of(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            return of(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        }
+        return new RawJson(null, 0, buffer.remaining(), buffer.slice());
+    }
+
+    static public RawJson of(String json) {
+        return of(json.getBytes(Charsets.UTF_8));
+    }
+
+    void write(JSONFactory.Session session) throws IOException {
+        if (bytes != null) {
+            session.writeRawValue(bytes, offset, length);
+        } else {
+            session.writeRawValue(buffer.duplicate());
+        }
+    }
+
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public String toString() {
+        return bytes != null ? new String(bytes, offset, length, Charsets.UTF_8)
+                : Charsets.UTF_8.decode(buffer.duplicate()).toString();
+    }
+}
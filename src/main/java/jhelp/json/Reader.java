@@ -0,0 +1,12 @@
+package jhelp.json;
+
+import java.io.IOException;
+
+/**
+ * Decoding counterpart of {@link Writer}. <code>read</code> is entered with the session
+ * on the first token of the value and returns with it on the last one, e.g. the
+ * <code>END_OBJECT</code> of an object.
+ */
+public interface Reader<T> {
+    T read(JSONDecoder.Session session) throws IOException;
+}
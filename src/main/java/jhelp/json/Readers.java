@@ -0,0 +1,403 @@
+package jhelp.json;
+
+import jhelp.lang.Pair;
+import jhelp.lang.Triple;
+import jhelp.lang.Tuple;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Readers for the types {@link Writers#PREDIFINED} writes. Containers decode their
+ * elements untyped, see {@link JSONDecoder.Session#readAny()}.
+ */
+public class Readers {
+
+    static public final Reader<Map> MAP = new Reader<Map>() {
+        @Override
+        public Map read(JSONDecoder.Session session) throws IOException {
+            Map<String, Object> m = new LinkedHashMap<String, Object>();
+            session.startObject();
+            for (String name = session.nextField(); name != null; name = session.nextField()) {
+                m.put(name, session.readAny());
+            }
+            return m;
+        }
+    };
+
+    static public final Reader<List> LIST = new Reader<List>() {
+        @Override
+        public List read(JSONDecoder.Session session) throws IOException {
+            List<Object> l = new ArrayList<Object>();
+            session.startArray();
+            while (session.nextElement()) {
+                l.add(session.readAny());
+            }
+            return l;
+        }
+    };
+
+    static public final Reader<Object[]> ARRAY = new Reader<Object[]>() {
+        @Override
+        public Object[] read(JSONDecoder.Session session) throws IOException {
+            return LIST.read(session).toArray();
+        }
+    };
+
+    static public final Reader<Object> ANY = new Reader<Object>() {
+        @Override
+        public Object read(JSONDecoder.Session session) throws IOException {
+            return session.readAny();
+        }
+    };
+
+    static public final Reader<Byte> BYTE = new Reader<Byte>() {
+        @Override
+        public Byte read(JSONDecoder.Session session) throws IOException {
+            return (byte) session.readInt();
+        }
+    };
+
+    static public final Reader<Short> SHORT = new Reader<Short>() {
+        @Override
+        public Short read(JSONDecoder.Session session) throws IOException {
+            return (short) session.readInt();
+        }
+    };
+
+    static public final Reader<Integer> INTEGER = new Reader<Integer>() {
+        @Override
+        public Integer read(JSONDecoder.Session session) throws IOException {
+            return session.readInt();
+        }
+    };
+
+    static public final Reader<Long> LONG = new Reader<Long>() {
+        @Override
+        public Long read(JSONDecoder.Session session) throws IOException {
+            return session.readLong();
+        }
+    };
+
+    static public final Reader<Float> FLOAT = new Reader<Float>() {
+        @Override
+        public Float read(JSONDecoder.Session session) throws IOException {
+            return session.readFloat();
+        }
+    };
+
+    static public final Reader<Double> DOUBLE = new Reader<Double>() {
+        @Override
+        public Double read(JSONDecoder.Session session) throws IOException {
+            return session.readDouble();
+        }
+    };
+
+    static public final Reader<byte[]> ARRAY_BYTE = new Reader<byte[]>() {
+        @Override
+        public byte[] read(JSONDecoder.Session session) throws IOException {
+            byte[] a = new byte[16];
+            int n = 0;
+            session.startArray();
+            while (session.nextElement()) {
+                if (n == a.length) {
+                    a = Arrays.copyOf(a, n * 2);
+                }
+                a[n++] = (byte) session.readInt();
+            }
+            return n == a.length ? a : Arrays.copyOf(a, n);
+        }
+    };
+
+    static public final Reader<short[]> ARRAY_SHORT = new Reader<short[]>() {
+        @Override
+        public short[] read(JSONDecoder.Session session) throws IOException {
+            short[] a = new short[16];
+            int n = 0;
+            session.startArray();
+            while (session.nextElement()) {
+                if (n == a.length) {
+                    a = Arrays.copyOf(a, n * 2);
+                }
+                a[n++] = (short) session.readInt();
+            }
+            return n == a.length ? a : Arrays.copyOf(a, n);
+        }
+    };
+
+    static public final Reader<int[]> ARRAY_INT = new Reader<int[]>() {
+        @Override
+        public int[] read(JSONDecoder.Session session) throws IOException {
+            int[] a = new int[16];
+            int n = 0;
+            session.startArray();
+            while (session.nextElement()) {
+                if (n == a.length) {
+                    a = Arrays.copyOf(a, n * 2);
+                }
+                a[n++] = session.readInt();
+            }
+            return n == a.length ? a : Arrays.copyOf(a, n);
+        }
+    };
+
+    static public final Reader<long[]> ARRAY_LONG = new Reader<long[]>() {
+        @Override
+        public long[] read(JSONDecoder.Session session) throws IOException {
+            long[] a = new long[16];
+            int n = 0;
+            session.startArray();
+            while (session.nextElement()) {
+                if (n == a.length) {
+                    a = Arrays.copyOf(a, n * 2);
+                }
+                a[n++] = session.readLong();
+            }
+            return n == a.length ? a : Arrays.copyOf(a, n);
+        }
+    };
+
+    static public final Reader<float[]> ARRAY_FLOAT = new Reader<float[]>() {
+        @Override
+        public float[] read(JSONDecoder.Session session) throws IOException {
+            float[] a = new float[16];
+            int n = 0;
+            session.startArray();
+            while (session.nextElement()) {
+                if (n == a.length) {
+                    a = Arrays.copyOf(a, n * 2);
+                }
+                a[n++] = session.readFloat();
+            }
+            return n == a.length ? a : Arrays.copyOf(a, n);
+        }
+    };
+
+    static public final Reader<double[]> ARRAY_DOUBLE = new Reader<double[]>() {
+        @Override
+        public double[] read(JSONDecoder.Session session) throws IOException {
+            double[] a = new double[16];
+            int n = 0;
+            session.startArray();
+            while (session.nextElement()) {
+                if (n == a.length) {
+                    a = Arrays.copyOf(a, n * 2);
+                }
+                a[n++] = session.readDouble();
+            }
+            return n == a.length ? a : Arrays.copyOf(a, n);
+        }
+    };
+
+    static public final Reader<boolean[]> ARRAY_BOOLEAN = new Reader<boolean[]>() {
+        @Override
+        public boolean[] read(JSONDecoder.Session session) throws IOException {
+            boolean[] a = new boolean[16];
+            int n = 0;
+            session.startArray();
+            while (session.nextElement()) {
+                if (n == a.length) {
+                    a = Arrays.copyOf(a, n * 2);
+                }
+                a[n++] = session.readBoolean();
+            }
+            return n == a.length ? a : Arrays.copyOf(a, n);
+        }
+    };
+
+    static public Reader<Pair> PAIR = new Reader<Pair>() {
+        @Override
+        public Pair read(JSONDecoder.Session session) throws IOException {
+            List l = LIST.read(session);
+            return Pair.of(l.get(0), l.get(1));
+        }
+    };
+
+    static public Reader<Triple> TRIPLE = new Reader<Triple>() {
+        @Override
+        public Triple read(JSONDecoder.Session session) throws IOException {
+            List l = LIST.read(session);
+            return Triple.of(l.get(0), l.get(1), l.get(2));
+        }
+    };
+
+    static public Reader<Tuple> TUPLE = new Reader<Tuple>() {
+        @Override
+        public Tuple read(JSONDecoder.Session session) throws IOException {
+            return new Tuple(LIST.read(session).toArray());
+        }
+    };
+
+    static public Reader<String> STRING = new Reader<String>() {
+        @Override
+        public String read(JSONDecoder.Session session) throws IOException {
+            return session.readString();
+        }
+    };
+
+    static public Reader<Boolean> BOOLEAN = new Reader<Boolean>() {
+        @Override
+        public Boolean read(JSONDecoder.Session session) throws IOException {
+            return session.readBoolean();
+        }
+    };
+
+    /**
+     * A one-character string, as <code>char</code> members are written.
+     */
+    static public Reader<Character> CHARACTER = new Reader<Character>() {
+        @Override
+        public Character read(JSONDecoder.Session session) throws IOException {
+            String s = session.readString();
+            Preconditions.checkState(s.length() == 1, "Expected a single character instead of \"%s\"", s);
+            return s.charAt(0);
+        }
+    };
+
+    static public final Map<Class, Reader> PREDIFINED = new HashMap<Class, Reader>();
+    static {
+        define(Byte.class, BYTE);
+        define(Short.class, SHORT);
+        define(Integer.class, INTEGER);
+        define(Long.class, LONG);
+        define(Float.class, FLOAT);
+        define(Double.class, DOUBLE);
+
+        define(byte[].class, ARRAY_BYTE);
+        define(short[].class, ARRAY_SHORT);
+        define(int[].class, ARRAY_INT);
+        define(long[].class, ARRAY_LONG);
+        define(float[].class, ARRAY_FLOAT);
+        define(double[].class, ARRAY_DOUBLE);
+        define(boolean[].class, ARRAY_BOOLEAN);
+
+        define(Object[].class, ARRAY);
+
+        define(Pair.class, PAIR);
+        define(Triple.class, TRIPLE);
+        define(Tuple.class, TUPLE);
+
+        define(String.class, STRING);
+        define(Boolean.class, BOOLEAN);
+        define(Character.class, CHARACTER);
+
+        define(Iterable.class, LIST);
+        define(Collection.class, LIST);
+        define(List.class, LIST);
+        define(ArrayList.class, as(ArrayList.class, LIST));
+        define(Map.class, MAP);
+        define(HashMap.class, as(HashMap.class, MAP));
+        define(LinkedHashMap.class, as(LinkedHashMap.class, MAP));
+        define(Object.class, ANY);
+    }
+    /**
+     * Reader of a collection or map type not registered itself, such as
+     * <code>Set</code> or <code>SortedMap</code>, when <code>readers</code> reads the
+     * <code>Collection</code> or <code>Map</code> interface: an instance of the type
+     * itself if concrete, else of the first of {@link #COLLECTIONS} or {@link #MAPS}
+     * it is assignable from, filled with untyped elements.
+     * @return null if <code>cls</code> is no such type
+     */
+    static Reader<?> container(Class<?> cls, Map<Class, Reader> readers) {
+        if (Collection.class.isAssignableFrom(cls) && readers.containsKey(Collection.class)) {
+            final MethodHandle constructor = constructor(cls, COLLECTIONS);
+            return constructor == null ? null : new Reader<Collection>() {
+                @Override
+                public Collection read(JSONDecoder.Session session) throws IOException {
+                    Collection<Object> c = newInstance(constructor);
+                    session.startArray();
+                    while (session.nextElement()) {
+                        c.add(session.readAny());
+                    }
+                    return c;
+                }
+            };
+        } else if (Map.class.isAssignableFrom(cls) && readers.containsKey(Map.class)) {
+            final MethodHandle constructor = constructor(cls, MAPS);
+            return constructor == null ? null : new Reader<Map>() {
+                @Override
+                public Map read(JSONDecoder.Session session) throws IOException {
+                    Map<String, Object> m = newInstance(constructor);
+                    session.startObject();
+                    for (String name = session.nextField(); name != null; name = session.nextField()) {
+                        m.put(name, session.readAny());
+                    }
+                    return m;
+                }
+            };
+        }
+        return null;
+    }
+
+    static private final List<Class<?>> COLLECTIONS = Arrays.<Class<?>>asList(
+            ArrayList.class, LinkedHashSet.class, TreeSet.class, ArrayDeque.class);
+    static private final List<Class<?>> MAPS = Arrays.<Class<?>>asList(
+            LinkedHashMap.class, TreeMap.class, ConcurrentHashMap.class, ConcurrentSkipListMap.class);
+
+    static private MethodHandle constructor(Class<?> cls, List<Class<?>> implementations) {
+        Class<?> impl = null;
+        if (!cls.isInterface() && !Modifier.isAbstract(cls.getModifiers())) {
+            impl = cls;
+        } else {
+            for (Class<?> c : implementations) {
+                if (cls.isAssignableFrom(c)) {
+                    impl = c;
+                    break;
+                }
+            }
+        }
+        try {
+            return impl == null ? null : MethodHandles.lookup().findConstructor(impl, MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(Object.class));
+        } catch (NoSuchMethodException e) {
+            return null;
+        } catch (IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    @SuppressWarnings("unchecked") //a new, empty container holds whatever it is given
+    static private <T> T newInstance(MethodHandle constructor) {
+        try {
+            return (T) (Object) constructor.invokeExact();
+        } catch (Throwable t) {
+            throw Throwables.propagate(t);
+        }
+    }
+
+    static private <T> void define(Class<T> cls, Reader<? extends T> reader) {
+        PREDIFINED.put(cls, reader);
+    }
+
+    /**
+     * @return <code>reader</code> declared to read <code>cls</code>, which its values are
+     *         instances of
+     */
+    static private <T> Reader<T> as(final Class<T> cls, final Reader<?> reader) {
+        return new Reader<T>() {
+            @Override
+            public T read(JSONDecoder.Session session) throws IOException {
+                return cls.cast(reader.read(session));
+            }
+        };
+    }
+}
@@ -0,0 +1,58 @@
+package jhelp.json;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Running estimate of encoded sizes per root class: moving averages of the size and of
+ * its deviation, so a buffer sized by {@link #get(Class)} rarely has to grow. Updates
+ * race benignly, an estimate only needs to be close.
+ */
+class SizeHints {
+    static private final int SHIFT = 3; //weight of a new size is 1/8
+
+    private final ConcurrentMap<Class, Estimate> estimates = new ConcurrentHashMap<Class, Estimate>();
+
+    int get(Class cls) {
+        Estimate e = estimates.get(cls);
+        return e == null ? 0 : e.hint();
+    }
+
+    void seed(Class cls, int size) {
+        estimates.put(cls, new Estimate(size));
+    }
+
+    void record(Class cls, long size) {
+        int s = (int) Math.min(size, Integer.MAX_VALUE >> 2);
+        Estimate e = estimates.get(cls);
+        if (e == null) {
+            Estimate prev = estimates.putIfAbsent(cls, e = new Estimate(s));
+            if (prev == null) {
+                return;
+            }
+            e = prev;
+        }
+        e.update(s);
+    }
+
+    static private class Estimate {
+        private volatile int mean;
+        private volatile int deviation;
+
+        private Estimate(int size) {
+            this.mean = size;
+            this.deviation = size >> 2;
+        }
+
+        private void update(int size) {
+            int m = mean;
+            mean = m + ((size - m) >> SHIFT);
+            int d = deviation;
+            deviation = d + ((Math.abs(size - m) - d) >> SHIFT);
+        }
+
+        private int hint() {
+            return mean + 2 * deviation;
+        }
+    }
+}
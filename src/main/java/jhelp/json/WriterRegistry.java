@@ -0,0 +1,11 @@
+package jhelp.json;
+
+/**
+ * A set of writers registered in one go, such as those generated for
+ * {@link JSONWritable} classes. Registries listed in
+ * <code>META-INF/services/jhelp.json.WriterRegistry</code> are picked up by
+ * {@link JSONFactory.Builder#forGenerated()}.
+ */
+public interface WriterRegistry {
+    void register(JSONFactory.Builder builder);
+}
@@ -1,12 +1,22 @@
 package jhelp.json;
 
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
 import jhelp.lang.Pair;
 import jhelp.lang.Triple;
 import jhelp.lang.Tuple;
 
 import java.io.IOException;
+import java.util.Collection;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.BaseStream;
 
 public class Writers {
 
@@ -17,13 +27,74 @@ public class Writers {
                                   Map value) throws IOException {
                     session.startObject();
                     for (Object e : value.entrySet()) {
-                        session.writeFieldName(((Map.Entry)e).getKey().toString());
+                        session.writeKey(((Map.Entry)e).getKey());
                         session.writeObject(((Map.Entry)e).getValue());
                     }
                     session.endObject();
                 }
             };
 
+    /**
+     * {@link #MAP} leaving out entries whose values <code>omission</code> asks to.
+     */
+    static Writer<Map> map(final Omission omission) {
+        return new Writer<Map>() {
+            @Override
+            public void write(JSONFactory.Session session, Map value) throws IOException {
+                session.startObject();
+                for (Object e : value.entrySet()) {
+                    Object v = ((Map.Entry) e).getValue();
+                    if (!omission.omits(v)) {
+                        session.writeKey(((Map.Entry) e).getKey());
+                        session.writeObject(v);
+                    }
+                }
+                session.endObject();
+            }
+        };
+    }
+
+    /**
+     * {@link #MAP} for maps whose keys are all strings, written as they are. Register it
+     * for map classes known to be keyed by strings, or use it from custom writers.
+     */
+    static public final Writer<Map> STRING_MAP =
+            new Writer<Map>() {
+                @Override
+                public void write(JSONFactory.Session session, Map value) throws IOException {
+                    session.startObject();
+                    for (Object e : value.entrySet()) {
+                        session.writeFieldName((String) ((Map.Entry) e).getKey());
+                        session.writeObject(((Map.Entry) e).getValue());
+                    }
+                    session.endObject();
+                }
+            };
+
+    /**
+     * {@link #STRING_MAP} leaving out entries whose values <code>omission</code> asks to.
+     */
+    static Writer<Map> stringMap(final Omission omission) {
+        return new Writer<Map>() {
+            @Override
+            public void write(JSONFactory.Session session, Map value) throws IOException {
+                session.startObject();
+                for (Object e : value.entrySet()) {
+                    Object v = ((Map.Entry) e).getValue();
+                    if (!omission.omits(v)) {
+                        session.writeFieldName((String) ((Map.Entry) e).getKey());
+                        session.writeObject(v);
+                    }
+                }
+                session.endObject();
+            }
+        };
+    }
+
+    /**
+     * Writes each value as the name of its key. Values are mutable as far as this writer
+     * knows, so their names are never cached.
+     */
     static public final Writer<Map<? extends Object, ? extends Object>> MAP_REVERSED =
             new Writer<Map<? extends Object, ? extends Object>>() {
                 @Override
@@ -31,30 +102,144 @@ public class Writers {
                                   Map<? extends Object,? extends Object> value) throws IOException {
                     session.startObject();
                     for (Map.Entry<?, ?> e : value.entrySet()) {
-                        session.writeFieldName(e.getValue().toString());
+                        session.writeName(e.getValue());
                         session.writeObject(e.getKey());
                     }
                     session.endObject();
                 }
             };
 
+    /**
+     * {@link #MAP_REVERSED} leaving out entries whose keys, the values it writes,
+     * <code>omission</code> asks to.
+     */
+    static Writer<Map<? extends Object, ? extends Object>> mapReversed(final Omission omission) {
+        return new Writer<Map<? extends Object, ? extends Object>>() {
+            @Override
+            public void write(JSONFactory.Session session,
+                              Map<? extends Object, ? extends Object> value) throws IOException {
+                session.startObject();
+                for (Map.Entry<?, ?> e : value.entrySet()) {
+                    if (!omission.omits(e.getKey())) {
+                        session.writeName(e.getValue());
+                        session.writeObject(e.getKey());
+                    }
+                }
+                session.endObject();
+            }
+        };
+    }
+
+    /**
+     * Goes by keys rather than entries, which an EnumMap would allocate one by one.
+     */
+    static public final Writer<EnumMap> ENUM_MAP =
+            new Writer<EnumMap>() {
+                @Override
+                public void write(JSONFactory.Session session, EnumMap value) throws IOException {
+                    session.startObject();
+                    for (Object key : value.keySet()) {
+                        session.writeKey(key);
+                        session.writeObject(value.get(key));
+                    }
+                    session.endObject();
+                }
+            };
+
+    /**
+     * {@link #ENUM_MAP} leaving out entries whose values <code>omission</code> asks to.
+     */
+    static Writer<EnumMap> enumMap(final Omission omission) {
+        return new Writer<EnumMap>() {
+            @Override
+            public void write(JSONFactory.Session session, EnumMap value) throws IOException {
+                session.startObject();
+                for (Object key : value.keySet()) {
+                    Object v = value.get(key);
+                    if (!omission.omits(v)) {
+                        session.writeKey(key);
+                        session.writeObject(v);
+                    }
+                }
+                session.endObject();
+            }
+        };
+    }
+
+    static private final ClassValue<SerializableString[]> ENUM_NAMES = new ClassValue<SerializableString[]>() {
+        @Override
+        protected SerializableString[] computeValue(Class<?> type) {
+            Object[] constants = type.getEnumConstants();
+            SerializableString[] names = new SerializableString[constants.length];
+            for (int i=0; i<names.length; i++) {
+                names[i] = new SerializedString(constants[i].toString());
+            }
+            return names;
+        }
+    };
+
+    /**
+     * @return the encoded <code>toString()</code> of an enum constant, as used for keys
+     */
+    static SerializableString nameOf(Enum constant) {
+        return ENUM_NAMES.get(constant.getDeclaringClass())[constant.ordinal()];
+    }
+
     static public final Writer<Iterable> ITERABLE = new Writer<Iterable>() {
         @Override
         public void write(JSONFactory.Session session, Iterable value) throws IOException {
+            if (value instanceof Collection && ((JSONFactory.Session<?>) session).writeColumns((Collection<?>) value)) {
+                return;
+            }
+            if (value instanceof List && value instanceof RandomAccess
+                    && session.writeParallel(value, ((List) value).size())) {
+                return;
+            }
             session.startArray();
             for (Object item : (Iterable)value) {
                 session.writeObject(item);
+                session.checkpoint();
+            }
+            session.endArray();
+        }
+    };
+
+    static public final Writer<Iterator> ITERATOR = new Writer<Iterator>() {
+        @Override
+        public void write(JSONFactory.Session session, Iterator value) throws IOException {
+            session.startArray();
+            while (value.hasNext()) {
+                session.writeObject(value.next());
+                session.checkpoint();
             }
             session.endArray();
         }
     };
 
+    static public final Writer<BaseStream> STREAM = new Writer<BaseStream>() {
+        @Override
+        public void write(JSONFactory.Session session, BaseStream value) throws IOException {
+            ITERATOR.write(session, value.iterator());
+        }
+    };
+
+    static public final Writer<Spliterator> SPLITERATOR = new Writer<Spliterator>() {
+        @Override
+        public void write(JSONFactory.Session session, Spliterator value) throws IOException {
+            ITERATOR.write(session, Spliterators.iterator((Spliterator<?>) value));
+        }
+    };
+
     static public final Writer<Object[]> ARRAY = new Writer<Object[]>() {
         @Override
         public void write(JSONFactory.Session session, Object[] value) throws IOException {
+            if (session.writeParallel(value, value.length)) {
+                return;
+            }
             session.startArray();
             for (Object item : value) {
                 session.writeObject(item);
+                session.checkpoint();
             }
             session.endArray();
         }
@@ -105,81 +290,71 @@ public class Writers {
     static public final Writer<byte[]> ARRAY_BYTE = new Writer<byte[]>() {
         @Override
         public void write(JSONFactory.Session session, byte[] value) throws IOException {
-            session.startArray();
-            for (byte v : value) {
-                session.writeNumber(v);
+            if (!session.writeParallel(value, value.length)) {
+                session.writeArray(value, 0, value.length);
             }
-            session.endArray();
         }
     };
 
     static public final Writer<short[]> ARRAY_SHORT = new Writer<short[]>() {
         @Override
         public void write(JSONFactory.Session session, short[] value) throws IOException {
-            session.startArray();
-            for (short v : value) {
-                session.writeNumber(v);
+            if (!session.writeParallel(value, value.length)) {
+                session.writeArray(value, 0, value.length);
             }
-            session.endArray();
         }
     };
 
     static public final Writer<int[]> ARRAY_INT = new Writer<int[]>() {
         @Override
         public void write(JSONFactory.Session session, int[] value) throws IOException {
-            session.startArray();
-            for (int v : value) {
-                session.writeNumber(v);
+            if (!session.writeParallel(value, value.length)) {
+                session.writeArray(value, 0, value.length);
             }
-            session.endArray();
         }
     };
 
     static public final Writer<long[]> ARRAY_LONG = new Writer<long[]>() {
         @Override
-        public void write(JSONFactory.Session sessioin, long[] value) throws IOException {
-            sessioin.startArray();
-            for (long v : value) {
-                sessioin.writeNumber(v);
+        public void write(JSONFactory.Session session, long[] value) throws IOException {
+            if (!session.writeParallel(value, value.length)) {
+                session.writeArray(value, 0, value.length);
             }
-            sessioin.endArray();
         }
     };
 
     static public final Writer<float[]> ARRAY_FLOAT = new Writer<float[]>() {
         @Override
         public void write(JSONFactory.Session session, float[] value) throws IOException {
-            session.startArray();
-            for (float v : value) {
-                session.writeNumber(v);
+            if (!session.writeParallel(value, value.length)) {
+                session.writeArray(value, 0, value.length);
             }
-            session.endArray();
         }
     };
 
     static public final Writer<double[]> ARRAY_DOUBLE = new Writer<double[]>() {
         @Override
         public void write(JSONFactory.Session session, double[] value) throws IOException {
-            session.startArray();
-            for (double v : value) {
-                session.writeNumber(v);
+            if (!session.writeParallel(value, value.length)) {
+                session.writeArray(value, 0, value.length);
             }
-            session.endArray();
         }
     };
 
     static public final Writer<boolean[]> ARRAY_BOOLEAN = new Writer<boolean[]>() {
         @Override
         public void write(JSONFactory.Session session, boolean[] value) throws IOException {
-            session.startArray();
-            for (boolean v : value) {
-                session.writeBoolean(v);
+            if (!session.writeParallel(value, value.length)) {
+                session.writeArray(value, 0, value.length);
             }
-            session.endArray();
         }
     };
 
-    static public <T> Writer<T> named(final String name, final Writer<T> writer) {
+    static public <T> Writer<T> named(String name, Writer<T> writer) {
+        return named(new SerializedString(name), writer);
+    }
+
+    static public <T> Writer<T> named(final SerializableString name, final Writer<T> writer) {
         return new Writer<T>() {
             @Override
             public void write(JSONFactory.Session session, T value) throws IOException {
@@ -228,6 +403,13 @@ public class Writers {
         }
     };
 
+    static public Writer<RawJson> RAW = new Writer<RawJson>() {
+        @Override
+        public void write(JSONFactory.Session session, RawJson value) throws IOException {
+            value.write(session);
+        }
+    };
+
     static public Writer<Boolean> BOOLEAN = new Writer<Boolean>() {
         @Override
         public void write(JSONFactory.Session session, Boolean value) throws IOException {
@@ -260,9 +442,14 @@ public class Writers {
 
         define(String.class, STRING);
         define(Boolean.class, BOOLEAN);
+        define(RawJson.class, RAW);
 
         define(Iterable.class, ITERABLE);
+        define(Iterator.class, ITERATOR);
+        define(BaseStream.class, STREAM);
+        define(Spliterator.class, SPLITERATOR);
         define(Map.class, MAP);
+        define(EnumMap.class, ENUM_MAP);
     }
     static private <T> void define(Class<T> cls, Writer<T> writer) {
         PREDIFINED.put(cls, writer);
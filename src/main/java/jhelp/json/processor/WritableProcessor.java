@@ -0,0 +1,290 @@
+package jhelp.json.processor;
+
+import jhelp.json.JSONWritable;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates a plain {@link jhelp.json.Writer} for every {@link JSONWritable} class, named
+ * after the class with a <code>JSONWriter</code> suffix, in the same package. Fields are
+ * read directly, or through their getter when private, and field names are encoded once.
+ * <code>char</code> and <code>Character</code> fields are written as one-character
+ * strings.
+ * Each package gets a <code>GeneratedWriters</code> registry of its writers, listed as a
+ * service for {@link jhelp.json.JSONFactory.Builder#forGenerated()}.
+ */
+@SupportedAnnotationTypes("jhelp.json.JSONWritable")
+public class WritableProcessor extends AbstractProcessor {
+    static private final String SUFFIX = "JSONWriter";
+    static private final String REGISTRY = "GeneratedWriters";
+
+    private final Map<String, List<String[]>> registries = new LinkedHashMap<String, List<String[]>>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment env) {
+        for (Element e : env.getElementsAnnotatedWith(JSONWritable.class)) {
+            if (e.getKind() != ElementKind.CLASS) {
+                error(e, "@JSONWritable applies to classes only");
+                continue;
+            }
+            TypeElement type = (TypeElement) e;
+            try {
+                generate(type);
+            } catch (IOException ex) {
+                error(e, "Can't generate writer: " + ex);
+            }
+        }
+        if (env.processingOver() && !registries.isEmpty()) {
+            try {
+                writeRegistries();
+            } catch (IOException ex) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Can't generate registry: " + ex);
+            }
+        }
+        return true;
+    }
+
+    private void generate(TypeElement type) throws IOException {
+        if (type.getModifiers().contains(Modifier.PRIVATE)) {
+            error(type, "@JSONWritable class can't be private");
+            return;
+        }
+        String pkg = packageOf(type);
+        String simple = binarySimpleName(type);
+        String writer = simple + SUFFIX;
+        String typeName = type.getQualifiedName().toString();
+
+        List<String> names = new ArrayList<String>();
+        List<String> writes = new ArrayList<String>();
+        for (VariableElement field : fields(type)) {
+            String name = field.getSimpleName().toString();
+            String read = access(type, field);
+            if (read == null) {
+                return;
+            }
+            String constant = "NAME_" + names.size();
+            names.add("    static private final SerializableString " + constant
+                    + " = new SerializedString(\"" + name + "\");");
+            writes.add("        session." + write(field.asType(), constant, read) + ";");
+        }
+
+        PrintWriter out = new PrintWriter(processingEnv.getFiler()
+                .createSourceFile(qualify(pkg, writer), type).openWriter());
+        try {
+            if (!pkg.isEmpty()) {
+                out.println("package " + pkg + ";");
+                out.println();
+            }
+            out.println("import com.fasterxml.jackson.core.SerializableString;");
+            out.println("import com.fasterxml.jackson.core.io.SerializedString;");
+            out.println("import jhelp.json.JSONFactory;");
+            out.println("import jhelp.json.Writer;");
+            out.println();
+            out.println("import java.io.IOException;");
+            out.println();
+            out.println("/**");
+            out.println(" * Generated by " + getClass().getName() + ", do not edit.");
+            out.println(" */");
+            out.println("@SuppressWarnings(\"rawtypes\") //Writer takes a raw session, generic classes are written raw");
+            out.println("public class " + writer + " implements Writer<" + typeName + "> {");
+            for (String n : names) {
+                out.println(n);
+            }
+            out.println();
+            out.println("    @Override");
+            out.println("    public void write(JSONFactory.Session session, " + typeName + " value) throws IOException {");
+            out.println("        session.startObject();");
+            for (String w : writes) {
+                out.println(w);
+            }
+            out.println("        session.endObject();");
+            out.println("    }");
+            out.println("}");
+        } finally {
+            out.close();
+        }
+
+        List<String[]> registry = registries.get(pkg);
+        if (registry == null) {
+            registries.put(pkg, registry = new ArrayList<String[]>());
+        }
+        registry.add(new String[]{typeName, writer});
+    }
+
+    private void writeRegistries() throws IOException {
+        Filer filer = processingEnv.getFiler();
+        Set<String> services = new LinkedHashSet<String>();
+        for (Map.Entry<String, List<String[]>> e : registries.entrySet()) {
+            String pkg = e.getKey();
+            PrintWriter out = new PrintWriter(filer.createSourceFile(qualify(pkg, REGISTRY)).openWriter());
+            try {
+                if (!pkg.isEmpty()) {
+                    out.println("package " + pkg + ";");
+                    out.println();
+                }
+                out.println("import jhelp.json.JSONFactory;");
+                out.println("import jhelp.json.WriterRegistry;");
+                out.println();
+                out.println("/**");
+                out.println(" * Generated by " + getClass().getName() + ", do not edit.");
+                out.println(" */");
+                out.println("public class " + REGISTRY + " implements WriterRegistry {");
+                out.println("    @Override");
+                out.println("    @SuppressWarnings({\"rawtypes\", \"unchecked\"}) //generic classes are registered raw");
+                out.println("    public void register(JSONFactory.Builder builder) {");
+                for (String[] w : e.getValue()) {
+                    out.println("        builder.forClass(" + w[0] + ".class, new " + w[1] + "());");
+                }
+                out.println("    }");
+                out.println("}");
+            } finally {
+                out.close();
+            }
+            services.add(qualify(pkg, REGISTRY));
+        }
+        PrintWriter out = new PrintWriter(filer.createResource(StandardLocation.CLASS_OUTPUT, "",
+                "META-INF/services/jhelp.json.WriterRegistry").openWriter());
+        try {
+            for (String s : services) {
+                out.println(s);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Instance fields of the class then of its ancestors, transient ones excepted.
+     */
+    private List<VariableElement> fields(TypeElement type) {
+        List<VariableElement> r = new ArrayList<VariableElement>();
+        for (TypeElement t = type; t != null; t = superclass(t)) {
+            for (VariableElement f : ElementFilter.fieldsIn(t.getEnclosedElements())) {
+                Set<Modifier> m = f.getModifiers();
+                if (!m.contains(Modifier.STATIC) && !m.contains(Modifier.TRANSIENT)) {
+                    r.add(f);
+                }
+            }
+        }
+        return r;
+    }
+
+    private TypeElement superclass(TypeElement type) {
+        TypeMirror s = type.getSuperclass();
+        if (s.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        TypeElement t = (TypeElement) ((DeclaredType) s).asElement();
+        return t.getQualifiedName().contentEquals("java.lang.Object") ? null : t;
+    }
+
+    /**
+     * @return the expression reading <code>field</code> off <code>value</code>, or null
+     *         if it can't be read from the generated writer's package
+     */
+    private String access(TypeElement type, VariableElement field) {
+        String name = field.getSimpleName().toString();
+        TypeElement owner = (TypeElement) field.getEnclosingElement();
+        if (!field.getModifiers().contains(Modifier.PRIVATE) && visible(type, owner, field)) {
+            return "value." + name;
+        }
+        String capitalized = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        for (ExecutableElement m : ElementFilter.methodsIn(owner.getEnclosedElements())) {
+            String n = m.getSimpleName().toString();
+            if (m.getParameters().isEmpty() && !m.getModifiers().contains(Modifier.PRIVATE)
+                    && !m.getModifiers().contains(Modifier.STATIC)
+                    && (n.equals("get" + capitalized) || n.equals("is" + capitalized))
+                    && processingEnv.getTypeUtils().isSameType(m.getReturnType(), field.asType())) {
+                return "value." + n + "()";
+            }
+        }
+        error(field, "Field " + name + " is private and has no getter, can't be written by a generated writer");
+        return null;
+    }
+
+    private boolean visible(TypeElement type, TypeElement owner, VariableElement field) {
+        return field.getModifiers().contains(Modifier.PUBLIC) || packageOf(type).equals(packageOf(owner));
+    }
+
+    /**
+     * @return the session call writing the value <code>read</code> under the name held
+     *         by <code>constant</code>; characters are written as one-character strings
+     */
+    static private String write(TypeMirror type, String constant, String read) {
+        switch (type.getKind()) {
+            case INT:
+            case SHORT:
+            case BYTE:
+            case LONG:
+            case FLOAT:
+            case DOUBLE:
+                return "writeNumberField(" + constant + ", " + read + ")";
+            case BOOLEAN:
+                return "writeBooleanField(" + constant + ", " + read + ")";
+            case CHAR:
+                return "writeStringField(" + constant + ", String.valueOf(" + read + "))";
+            default:
+                String name = type.toString();
+                if (name.equals("java.lang.String")) {
+                    return "writeStringField(" + constant + ", " + read + ")";
+                } else if (name.equals("java.lang.Character")) {
+                    return "writeStringField(" + constant + ", java.util.Objects.toString(" + read + ", null))";
+                }
+                return "writeNamedObject(" + constant + ", " + read + ")";
+        }
+    }
+
+    private String packageOf(Element e) {
+        while (e.getKind() != ElementKind.PACKAGE) {
+            e = e.getEnclosingElement();
+        }
+        return ((PackageElement) e).getQualifiedName().toString();
+    }
+
+    /**
+     * Name of a possibly nested class within its package, with '_' for '.'
+     */
+    private String binarySimpleName(TypeElement type) {
+        String pkg = packageOf(type);
+        String name = type.getQualifiedName().toString();
+        return (pkg.isEmpty() ? name : name.substring(pkg.length() + 1)).replace('.', '_');
+    }
+
+    static private String qualify(String pkg, String name) {
+        return pkg.isEmpty() ? name : pkg + "." + name;
+    }
+
+    private void error(Element e, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, e);
+    }
+}
@@ -0,0 +1,56 @@
+package jhelp.json;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static junit.framework.Assert.assertEquals;
+
+@RunWith(JUnit4.class)
+public class BackendTest {
+
+    @Test
+    public void smile() throws IOException {
+        JSONFactory json = JSONFactory.predefined().finish();
+        JSONFactory smile = JSONFactory.predefined().backend(new SmileFactory()).parallel(1).finish();
+
+        Object data = new Object[]{1, "foo", new long[]{1, 2, 3}, new double[]{1.5},
+                Collections.singletonMap("bar", Arrays.asList(true, null))};
+
+        assertEquals("test smile encode",
+                new ObjectMapper().readTree(json.encode(data)),
+                new ObjectMapper(new SmileFactory()).readTree(smile.encodeBytes(data)));
+    }
+
+    @Test
+    public void passThrough() throws IOException {
+        JSONFactory jf = JSONFactory.predefined()
+                .backend(new JsonFactory().enable(JsonGenerator.Feature.ESCAPE_NON_ASCII))
+                .finish();
+
+        assertEquals("test pass-through backend", "\"\\u00E9\"", jf.encode("\u00e9"));
+    }
+
+    @Test
+    public void numbersAsStrings() throws IOException {
+        JSONFactory jf = JSONFactory.predefined()
+                .backend(new JsonFactory().enable(JsonGenerator.Feature.WRITE_NUMBERS_AS_STRINGS))
+                .finish();
+
+        assertEquals("test numbers as strings", "[\"1\",\"2\"]", jf.encode(new long[]{1, 2}));
+        assertEquals("test numbers as strings", "[\"1.5\"]", jf.encode(new double[]{1.5}));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void binaryToChars() throws IOException {
+        JSONFactory.predefined().backend(new SmileFactory()).finish().encode(1);
+    }
+}
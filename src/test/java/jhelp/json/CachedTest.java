@@ -0,0 +1,47 @@
+package jhelp.json;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static junit.framework.Assert.assertEquals;
+
+@RunWith(JUnit4.class)
+public class CachedTest {
+
+    static class Entry {
+        public final String name;
+        public final int[] values;
+
+        Entry(String name, int... values) {
+            this.name = name;
+            this.values = values;
+        }
+    }
+
+    @Test
+    public void run() throws IOException {
+        JSONFactory jf = JSONFactory.predefined()
+                .forFields(Entry.class)
+                .cacheEncoded(16, Entry.class)
+                .finish();
+
+        Entry a = new Entry("a", 1, 2);
+        Entry b = new Entry("b");
+        String expected = "[{\"name\":\"a\",\"values\":[1,2]},{\"name\":\"b\",\"values\":[]},{\"name\":\"a\",\"values\":[1,2]}]";
+
+        assertEquals("test encoded cache", expected, jf.encode(Arrays.asList(a, b, a)));
+        assertEquals("test encoded cache", expected,
+                jf.encode(Arrays.asList(a, b, a), new ByteArrayOutputStream()).toString("UTF-8"));
+        assertEquals("test encoded cache", "{\"x\":{\"name\":\"b\",\"values\":[]}}",
+                jf.encode(Collections.singletonMap("x", b)));
+
+        assertEquals("test encoded cache stats", 2, jf.encodedStats().missCount());
+        assertEquals("test encoded cache stats", 5, jf.encodedStats().hitCount());
+    }
+}
@@ -0,0 +1,63 @@
+package jhelp.json;
+
+import com.google.common.io.ByteStreams;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import static junit.framework.Assert.assertEquals;
+
+@RunWith(JUnit4.class)
+public class CompressionTest {
+
+    static private String gunzip(byte[] bytes) throws IOException {
+        return new String(ByteStreams.toByteArray(new GZIPInputStream(new ByteArrayInputStream(bytes))), "UTF-8");
+    }
+
+    @Test
+    public void run() throws IOException {
+        JSONFactory jf = JSONFactory.predefined().finish();
+        int[] large = new int[10000];
+        Arrays.fill(large, 7);
+
+        for (int i=0; i<2; i++) { //second round on pooled deflaters
+            assertEquals("test gzip", jf.encode(large), gunzip(jf.encodeBytes(large, Compression.GZIP)));
+            assertEquals("test gzip", "[1,2]", gunzip(jf.encodeBytes(new int[]{1, 2}, Compression.GZIP)));
+
+            ByteArrayOutputStream os = jf.encode(Arrays.asList("foo", 1), new ByteArrayOutputStream(),
+                    Compression.deflate(9));
+            InputStream in = new InflaterInputStream(new ByteArrayInputStream(os.toByteArray()));
+            assertEquals("test deflate", "[\"foo\",1]", new String(ByteStreams.toByteArray(in), "UTF-8"));
+        }
+    }
+
+    @Test
+    public void streaming() throws Exception {
+        JSONFactory jf = JSONFactory.predefined().finish();
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        JSONFactory.Session<ByteArrayOutputStream> session = jf.prepare(os, Compression.DEFLATE);
+
+        session.startArray().writeString("foo").flush();
+        Inflater inflater = new Inflater();
+        inflater.setInput(os.toByteArray());
+        byte[] out = new byte[64];
+        int n = inflater.inflate(out);
+        assertEquals("test flushed prefix", "[\"foo\"", new String(out, 0, n, "UTF-8"));
+
+        session.writeString("bar").endArray().finish();
+        InputStream in = new InflaterInputStream(new ByteArrayInputStream(os.toByteArray()));
+        assertEquals("test finished", "[\"foo\",\"bar\"]", new String(ByteStreams.toByteArray(in), "UTF-8"));
+
+        session.reset(os = new ByteArrayOutputStream(), Compression.GZIP).writeObject("baz").finish();
+        assertEquals("test reset compressed", "\"baz\"", gunzip(os.toByteArray()));
+    }
+}
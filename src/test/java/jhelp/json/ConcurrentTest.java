@@ -0,0 +1,43 @@
+package jhelp.json;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static junit.framework.Assert.assertEquals;
+
+@RunWith(JUnit4.class)
+public class ConcurrentTest {
+
+    @Test
+    public void run() throws Exception {
+        final JSONFactory jf = JSONFactory.predefined().finish();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> futures = new ArrayList<Future<String>>();
+            for (int i=0; i<64; i++) {
+                futures.add(pool.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws IOException {
+                        //ArrayList, LinkedList & co. all resolve through Iterable
+                        return jf.encode(Arrays.asList(1, "foo", new ArrayList<Object>(Arrays.asList(2L, true))));
+                    }
+                }));
+            }
+            for (Future<String> f : futures) {
+                assertEquals("test concurrent encode", "[1,\"foo\",[2,true]]", f.get());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package jhelp.json;
 
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -63,4 +65,73 @@ public class CustomizedTest {
                 "{\"b1\":\"b1v\",\"d0\":\"d0v\",\"d1\":\"d1v\"}",
                 jf.encode(fc));
     }
+
+    @Test
+    public void preencoded() throws IOException {
+        FooClass fc = new FooClass();
+        fc.b1 = "b1v";
+        fc.d1 = "d1v";
+
+        final SerializableString B1 = new SerializedString("b\"1");
+        final SerializableString D1 = new SerializedString("d1");
+        Writer<FooClass> writer = new Writer<FooClass>() {
+            @Override
+            public void write(JSONFactory.Session session, FooClass value) throws IOException {
+                session.startObject();
+                session.writeStringField(B1, value.b1);
+                session.writeNamedObject(D1, value.d1);
+                session.writeNumberField(D1, 1);
+                session.endObject();
+            }
+        };
+
+        JSONFactory jf = JSONFactory.predefined().forClass(FooClass.class, writer).finish();
+
+        assertEquals("test pre-encoded names",
+                "{\"b\\\"1\":\"b1v\",\"d1\":\"d1v\",\"d1\":1}",
+                jf.encode(fc));
+    }
+
+    @Test
+    public void extractors() throws IOException {
+        FooClass fc = new FooClass();
+        fc.b1 = "b1v";
+        fc.d1 = "d1v";
+
+        JSONFactory jf = JSONFactory.predefined()
+                .extratAsArray(FooClass.class, new Extractor<FooClass>() {
+                    @Override
+                    public Object[] extract(FooClass object) {
+                        return new Object[]{object.b1, 1};
+                    }
+                })
+                .extratAsObject(FooBase.class, new Extractor<FooBase>() {
+                    @Override
+                    public Object[] extract(FooBase object) {
+                        return new Object[]{"b1", object.b1, "n", 2.5};
+                    }
+                })
+                .finish();
+        assertEquals("test array extractor", "[\"b1v\",1]", jf.encode(fc));
+        assertEquals("test object extractor", "{\"b1\":null,\"n\":2.5}", jf.encode(new FooBase()));
+
+        jf = JSONFactory.predefined()
+                .extratAsArray(FooClass.class, new PushExtractor<FooClass>() {
+                    @Override
+                    public void extract(FooClass object, JSONFactory.Session session) throws IOException {
+                        session.writeString(object.d1);
+                        session.writeNumber(1);
+                    }
+                })
+                .extratAsObject(FooBase.class, new PushExtractor<FooBase>() {
+                    @Override
+                    public void extract(FooBase object, JSONFactory.Session session) throws IOException {
+                        session.writeNumberField("n", 2L);
+                        session.writeBooleanField("b", true);
+                    }
+                })
+                .finish();
+        assertEquals("test push array extractor", "[\"d1v\",1]", jf.encode(fc));
+        assertEquals("test push object extractor", "{\"n\":2,\"b\":true}", jf.encode(new FooBase()));
+    }
 }
@@ -0,0 +1,105 @@
+package jhelp.json;
+
+import jhelp.lang.Pair;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeSet;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+@RunWith(JUnit4.class)
+public class DecodeTest {
+
+    static class Foo {
+        private int i;
+        private short s;
+        private long l;
+        private float f;
+        private double d;
+        private boolean b;
+        private final String str = null;
+        private Foo next;
+        private List<Object> items;
+    }
+
+    @Test
+    public void predefined() throws IOException {
+        JSONDecoder jd = JSONDecoder.predefined().finish();
+
+        assertEquals("test decode", Integer.valueOf(123), jd.decode("123", Integer.class));
+        assertEquals("test decode", Long.valueOf(123), jd.decode("123", Long.class));
+        assertEquals("test decode", Double.valueOf(1.2), jd.decode("1.2", Double.class));
+        assertEquals("test decode", Boolean.TRUE, jd.decode("true", Boolean.class));
+        assertEquals("test decode", "foo", jd.decode("\"foo\"", String.class));
+        assertNull("test decode", jd.decode("null", String.class));
+        assertTrue("test decode", Arrays.equals(new int[]{1, 2, 3}, jd.decode("[1,2,3]", int[].class)));
+        assertTrue("test decode", Arrays.equals(new double[]{1.5, 2}, jd.decode("[1.5,2]", double[].class)));
+        assertTrue("test decode", Arrays.equals(new String[]{"a", null}, jd.decode("[\"a\",null]", String[].class)));
+        assertEquals("test decode", Pair.of("foo", 1), jd.decode("[\"foo\",1]", Pair.class));
+
+        Map<String, Object> m = new LinkedHashMap<String, Object>();
+        m.put("foo", Arrays.asList(1, "bar", true));
+        m.put("baz", null);
+        assertEquals("test decode", m, jd.decode("{\"foo\":[1,\"bar\",true],\"baz\":null}", Map.class));
+    }
+
+    @Test
+    public void reflected() throws IOException {
+        JSONFactory jf = JSONFactory.predefined().forDeclaredFields(Foo.class).finish();
+        JSONDecoder jd = JSONDecoder.predefined().forDeclaredFields(Foo.class).finish();
+
+        Foo foo = new Foo();
+        foo.i = 1;
+        foo.s = 2;
+        foo.l = 3;
+        foo.f = 4.5f;
+        foo.d = 5.5;
+        foo.b = true;
+        foo.next = new Foo();
+        foo.next.i = 7;
+        foo.items = Arrays.<Object>asList("x", 8);
+
+        String json = jf.encode(foo);
+        Foo decoded = jd.decode(json.replace("{\"i\"", "{\"unknown\":{\"a\":[1]},\"i\""), Foo.class);
+        assertEquals("test reflected decode", json, jf.encode(decoded));
+        assertEquals("test reflected decode", 7, decoded.next.i);
+    }
+
+    static class Containers {
+        static private final long serialVersionUID = 1L;
+        static int counter = 7;
+        private Set<Object> set;
+        private SortedMap<String, Object> sorted;
+        private Collection<Object> collection;
+        private TreeSet<Object> tree;
+        private char c;
+    }
+
+    @Test
+    public void containers() throws IOException {
+        JSONDecoder jd = JSONDecoder.predefined().forDeclaredFields(Containers.class).finish();
+
+        Containers c = jd.decode("{\"counter\":1,\"set\":[1,1,2],\"sorted\":{\"b\":1,\"a\":2},"
+                + "\"collection\":[\"x\"],\"tree\":[\"b\",\"a\"],\"c\":\"z\"}", Containers.class);
+        assertEquals("test statics untouched", 7, Containers.counter);
+        assertEquals("test set", new LinkedHashSet<Object>(Arrays.<Object>asList(1, 2)), c.set);
+        assertEquals("test sorted map", Arrays.asList("a", "b"), new ArrayList<String>(c.sorted.keySet()));
+        assertEquals("test collection", Arrays.<Object>asList("x"), c.collection);
+        assertEquals("test concrete", "[a, b]", c.tree.toString());
+        assertEquals("test char", 'z', c.c);
+    }
+}
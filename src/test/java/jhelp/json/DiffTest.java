@@ -0,0 +1,101 @@
+package jhelp.json;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+
+@RunWith(JUnit4.class)
+public class DiffTest {
+
+    static class Entity {
+        private int id;
+        private double price;
+        private String name;
+        private Map<String, Object> attrs;
+    }
+
+    @Test
+    public void reflected() throws IOException {
+        DiffEncoder diff = JSONFactory.predefined().forDeclaredFields(Entity.class).finish().diffEncoder();
+
+        Entity e = new Entity();
+        e.id = 1;
+        e.price = 2.5;
+        e.name = "foo";
+        e.attrs = new LinkedHashMap<String, Object>(ImmutableMap.<String, Object>of("a", 1, "b", Arrays.asList(1, 2)));
+
+        assertEquals("test first snapshot",
+                "{\"id\":1,\"price\":2.5,\"name\":\"foo\",\"attrs\":{\"a\":1,\"b\":[1,2]}}",
+                diff.encode(1, e));
+        assertNull("test unchanged", diff.encode(1, e));
+
+        e.price = 3;
+        assertEquals("test changed primitive", "{\"price\":3.0}", diff.encode(1, e));
+
+        e.attrs.put("a", 2);
+        e.attrs.put("c", "x");
+        assertEquals("test changed nested", "{\"attrs\":{\"a\":2,\"c\":\"x\"}}", diff.encode(1, e));
+
+        e.attrs.remove("b");
+        e.name = null;
+        assertEquals("test removed", "{\"name\":null,\"attrs\":{\"b\":null}}", diff.encode(1, e));
+
+        assertEquals("test other key", "{\"id\":1,\"price\":3.0,\"name\":null,\"attrs\":{\"a\":2,\"c\":\"x\"}}",
+                diff.encode(2, e));
+    }
+
+    @Test
+    public void encoded() throws IOException {
+        DiffEncoder diff = JSONFactory.predefined().finish().diffEncoder();
+
+        Map<String, Object> m = new LinkedHashMap<String, Object>();
+        m.put("s", "foo");
+        m.put("n", ImmutableMap.of("x", 1, "y", 2));
+        assertEquals("test first snapshot", "{\"s\":\"foo\",\"n\":{\"x\":1,\"y\":2}}", diff.encode("k", m));
+
+        m.put("n", ImmutableMap.of("x", 1, "y", 3));
+        assertEquals("test changed nested", "{\"n\":{\"y\":3}}", diff.encode("k", m));
+
+        m.remove("s");
+        assertEquals("test removed", "{\"s\":null}", diff.encode("k", m));
+        assertNull("test unchanged", diff.encode("k", m));
+
+        assertEquals("test replaced", "\"bar\"", diff.encode("k", "bar"));
+        diff.forget("k");
+        assertEquals("test forgotten", "{\"n\":{\"x\":1,\"y\":3}}", diff.encode("k", m));
+    }
+
+    @Test
+    public void omitted() throws IOException {
+        JSONFactory jf = JSONFactory.predefined().forDeclaredFields(Entity.class).omit(Omit.values()).finish();
+        DiffEncoder diff = jf.diffEncoder();
+
+        Entity e = new Entity();
+        e.id = 1;
+        e.attrs = new LinkedHashMap<String, Object>();
+        assertEquals("test full encoding", "{\"id\":1}", jf.encode(e));
+        assertEquals("test first snapshot", "{\"id\":1}", diff.encode(1, e));
+
+        e.name = "foo";
+        e.price = 1.5;
+        assertEquals("test appeared", "{\"price\":1.5,\"name\":\"foo\"}", diff.encode(1, e));
+
+        e.name = null;
+        e.price = 0;
+        assertEquals("test omitted again", "{\"price\":null,\"name\":null}", diff.encode(1, e));
+        assertNull("test unchanged", diff.encode(1, e));
+
+        Entity empty = new Entity();
+        assertEquals("test all omitted first snapshot", "{}", diff.encode(2, empty));
+        assertNull("test all omitted unchanged", diff.encode(2, empty));
+    }
+}
@@ -0,0 +1,57 @@
+package jhelp.json;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+
+import static junit.framework.Assert.assertEquals;
+
+@RunWith(JUnit4.class)
+public class GeneratedTest {
+
+    static class FooBase {
+        private String b0;
+        public String b1;
+
+        public String getB0() {
+            return b0;
+        }
+    }
+
+    @JSONWritable
+    static class FooClass extends FooBase {
+        int i;
+        long l;
+        boolean b;
+        double d;
+        String s;
+        int[] a;
+        char c;
+        Character boxed;
+        transient String skipped;
+    }
+
+    @Test
+    public void run() throws IOException {
+        FooClass fc = new FooClass();
+        ((FooBase)(fc)).b0 = "b0v";
+        fc.b1 = "b1v";
+        fc.i = 1;
+        fc.l = 2;
+        fc.b = true;
+        fc.d = 1.5;
+        fc.a = new int[]{3};
+        fc.c = 'c';
+        fc.skipped = "skipped";
+
+        String expected = "{\"i\":1,\"l\":2,\"b\":true,\"d\":1.5,\"s\":null,\"a\":[3],\"c\":\"c\",\"boxed\":null,\"b0\":\"b0v\",\"b1\":\"b1v\"}";
+
+        assertEquals("test generated writer", expected,
+                JSONFactory.predefined().forClass(FooClass.class, new GeneratedTest_FooClassJSONWriter()).finish().encode(fc));
+
+        assertEquals("test generated registry", expected,
+                JSONFactory.predefined().forGenerated().finish().encode(fc));
+    }
+}
@@ -0,0 +1,61 @@
+package jhelp.json;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+@RunWith(JUnit4.class)
+public class MetricsTest {
+
+    @Test
+    public void run() throws IOException {
+        EncodeMetrics metrics = new EncodeMetrics();
+        JSONFactory jf = JSONFactory.predefined().instrument(metrics, 1).finish();
+
+        for (int i=0; i<3; i++) {
+            assertEquals("test instrumented encode", "[\"foo\",[1,2]]",
+                    jf.encode(new ArrayList<Object>(Arrays.asList("foo", new int[]{1, 2}))));
+        }
+
+        Map<Class, EncodeMetrics.Stats> byClass = metrics.byClass();
+        assertEquals(3, byClass.get(ArrayList.class).invocations);
+        assertEquals(3 * 13, byClass.get(ArrayList.class).bytes);
+        assertEquals(1, byClass.get(ArrayList.class).misses);
+        assertEquals(3 * 5, byClass.get(String.class).bytes);
+        assertEquals(0, byClass.get(String.class).misses);
+        assertEquals(3 * 5, byClass.get(int[].class).bytes);
+        assertTrue(byClass.get(ArrayList.class).nanos > 0);
+        assertEquals(3, metrics.byWriter().get(Writers.ITERABLE).invocations);
+
+        metrics.clear();
+        final int[] flushes = {0};
+        StringWriter out = new StringWriter() {
+            @Override
+            public void flush() {
+                flushes[0]++;
+            }
+        };
+        jf.prepareChars(out).writeObject(Collections.singletonMap("a", "bc"));
+        assertEquals("test char target held", 0, flushes[0]);
+        assertEquals("test member without colon", 4, metrics.byClass().get(String.class).bytes);
+
+        metrics.clear();
+        jf = JSONFactory.predefined().instrument(metrics, 2).finish();
+        for (int i=0; i<1000; i++) {
+            jf.prepare(new ByteArrayOutputStream()).writeObject(1).finish();
+        }
+        long sampled = metrics.byClass().get(Integer.class).invocations;
+        assertTrue("test sampling fresh sessions", sampled > 400 && sampled < 600);
+    }
+}
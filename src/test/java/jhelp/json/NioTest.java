@@ -0,0 +1,43 @@
+package jhelp.json;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+
+import static junit.framework.Assert.assertEquals;
+
+@RunWith(JUnit4.class)
+public class NioTest {
+
+    @Test
+    public void run() throws IOException {
+        JSONFactory jf = JSONFactory.predefined().finish();
+        int[] data = new int[3000];
+        String expected = jf.encode(data);
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(100);
+        ByteBufferOutput out = new ByteBufferOutput(direct, 1000);
+        jf.prepare(out).writeObject(data).finish();
+        assertEquals("test chained buffers", expected.length(), out.size());
+        assertEquals("test chained buffers", 7, out.buffers().length);
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        assertEquals("test drain", expected.length(), out.drainTo(Channels.newChannel(baos)));
+        assertEquals("test drain", expected, baos.toString("UTF-8"));
+        assertEquals("test drain", 0, out.size());
+
+        baos.reset();
+        jf.encode(data, Channels.newChannel(baos));
+        assertEquals("test channel encode", expected, baos.toString("UTF-8"));
+
+        ByteBuffer heap = ByteBuffer.allocate(16);
+        ByteBuffer[] views = jf.encode("foo", heap).buffers();
+        assertEquals("test heap buffer", 1, views.length);
+        assertEquals("test heap buffer", "\"foo\"", new String(views[0].array(), 0, views[0].limit(), "UTF-8"));
+    }
+}
@@ -0,0 +1,47 @@
+package jhelp.json;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+
+import static junit.framework.Assert.assertEquals;
+
+@RunWith(JUnit4.class)
+public class ParallelTest {
+
+    @Test
+    public void run() throws IOException {
+        JSONFactory sequential = JSONFactory.predefined().finish();
+        JSONFactory parallel = JSONFactory.predefined().parallel(new ForkJoinPool(4), 100).finish();
+
+        List<Object> list = new ArrayList<Object>();
+        final long[] longs = new long[10000];
+        for (int i=0; i<longs.length; i++) {
+            longs[i] = i * 31L;
+            list.add(i % 3 == 0 ? "s" + i : i % 3 == 1 ? new int[]{i, -i} : null);
+        }
+        Object[] nested = {list, longs, new double[]{1.5, 2}, list.toArray()};
+
+        assertEquals("test parallel list", sequential.encode(list), parallel.encode(list));
+        assertEquals("test parallel longs", sequential.encode(longs), parallel.encode(longs));
+        assertEquals("test parallel nested", sequential.encode(nested), parallel.encode(nested));
+        assertEquals("test parallel bytes", sequential.encode(nested),
+                parallel.encode(nested, new ByteArrayOutputStream()).toString("UTF-8"));
+
+        final JSONFactory inner = parallel;
+        String fromOtherPool = new ForkJoinPool(2).submit(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                return inner.encode(longs);
+            }
+        }).join();
+        assertEquals("test parallel from another pool", sequential.encode(longs), fromOtherPool);
+    }
+}
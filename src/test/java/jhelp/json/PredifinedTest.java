@@ -7,7 +7,10 @@ import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import static junit.framework.Assert.assertEquals;
@@ -50,6 +53,79 @@ public class PredifinedTest {
         assertEquals("test json encode", "[\"foo\",\"bar\",\"baz\"]", jf.encode(Triple.of("foo", "bar", "baz")));
     }
 
+    @Test
+    public void primitiveArrays() throws IOException {
+        JSONFactory jf = JSONFactory.predefined().finish();
+
+        double[] doubles = {0, -0.0, 1, -1, 1.5, 1e7, -1e7, 9999999, 1e-3, 1e-4, 3.14159, 1e300,
+                Double.NaN, Double.POSITIVE_INFINITY, Double.MIN_VALUE, Long.MAX_VALUE};
+        Object[] boxed = new Object[doubles.length];
+        for (int i=0; i<doubles.length; i++) {
+            boxed[i] = doubles[i];
+        }
+        assertEquals("test bulk doubles", jf.encode(boxed), jf.encode(doubles));
+
+        float[] floats = {0, -0f, 1, 2.5f, 1e7f, 0.1f, Float.NaN};
+        boxed = new Object[floats.length];
+        for (int i=0; i<floats.length; i++) {
+            boxed[i] = floats[i];
+        }
+        assertEquals("test bulk floats", jf.encode(boxed), jf.encode(floats));
+
+        long[] longs = new long[5000]; //spans several scratch buffers
+        StringBuilder expected = new StringBuilder("[");
+        for (int i=0; i<longs.length; i++) {
+            longs[i] = Long.MIN_VALUE + i;
+            expected.append(i > 0 ? "," : "").append(longs[i]);
+        }
+        assertEquals("test bulk longs", expected.append(']').toString(), jf.encode(longs));
+
+        assertEquals("test bulk shorts", "[-1,2]", jf.encode(new short[]{-1, 2}));
+        assertEquals("test empty array", "[]", jf.encode(new int[0]));
+        assertEquals("test nested arrays", "[[1],[],{\"foo\":[true]}]",
+                jf.encode(new Object[]{new int[]{1}, new double[0], forKeyValue("foo", new boolean[]{true})}));
+    }
+
+    enum Color {
+        RED, GREEN {
+            @Override
+            public String toString() {
+                return "green!";
+            }
+        }
+    }
+
+    @Test
+    public void maps() throws IOException {
+        JSONFactory jf = JSONFactory.predefined().cacheKeys(2).finish();
+
+        EnumMap<Color, Integer> em = new EnumMap<Color, Integer>(Color.class);
+        em.put(Color.GREEN, 2);
+        em.put(Color.RED, 1);
+        assertEquals("test enum map", "{\"RED\":1,\"green!\":2}", jf.encode(em));
+
+        Map<Object, Object> m = new LinkedHashMap<Object, Object>();
+        for (int i=0; i<3; i++) {
+            m.clear();
+            m.put("a\"", i);
+            m.put(i, "b");
+            m.put(Color.RED, null);
+            assertEquals("test cached keys", "{\"a\\\"\":" + i + ",\"" + i + "\":\"b\",\"RED\":null}", jf.encode(m));
+        }
+
+        m.clear();
+        m.put("x", 1);
+        JSONFactory strings = JSONFactory.predefined().forClass(Map.class, Writers.STRING_MAP).finish();
+        assertEquals("test string keys", "{\"x\":1}", strings.encode(m));
+
+        StringBuilder name = new StringBuilder("a");
+        Map<Object, Object> reversed = Collections.<Object, Object>singletonMap(1, name);
+        JSONFactory rf = JSONFactory.predefined().cacheKeys(2).forClass(Map.class, (Writer) Writers.MAP_REVERSED).finish();
+        assertEquals("test reversed", "{\"a\":1}", rf.encode(reversed));
+        name.append('b');
+        assertEquals("test reversed uncached", "{\"ab\":1}", rf.encode(reversed));
+    }
+
     static private <K,V> Map<K,V> forKeyValue(K k, V v) {
         Map<K,V> m = new HashMap<K, V>();
         m.put(k, v);
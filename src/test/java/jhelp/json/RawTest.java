@@ -0,0 +1,36 @@
+package jhelp.json;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static junit.framework.Assert.assertEquals;
+
+@RunWith(JUnit4.class)
+public class RawTest {
+
+    @Test
+    public void run() throws IOException {
+        JSONFactory jf = JSONFactory.predefined().finish();
+
+        byte[] cached = "xx{\"a\":[1,\"é\"]}xx".getBytes("UTF-8");
+        ByteBuffer direct = ByteBuffer.allocateDirect(16);
+        direct.put("[true]".getBytes("UTF-8")).flip();
+
+        Object data = Arrays.asList(1,
+                RawJson.of(cached, 2, cached.length - 4),
+                Collections.singletonMap("b", RawJson.of(direct)),
+                RawJson.of("null"));
+        String expected = "[1,{\"a\":[1,\"é\"]},{\"b\":[true]},null]";
+
+        assertEquals("test raw splice", expected, jf.encode(data));
+        assertEquals("test raw splice", expected,
+                jf.encode(data, new ByteArrayOutputStream()).toString("UTF-8"));
+    }
+}
@@ -5,6 +5,16 @@ import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
 import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
 import static junit.framework.Assert.assertEquals;
 
@@ -36,6 +46,55 @@ public class ReflectedTest {
         }
     }
 
+    static class Primitives {
+        private int i = 1;
+        private long l = 2L;
+        private short s = 3;
+        private double d = 4.5;
+        private boolean b = true;
+        private Integer boxed = null;
+
+        private long lm() {
+            return l * 10;
+        }
+    }
+
+    @Test
+    public void primitives() throws IOException {
+        JSONFactory jf;
+
+        jf = JSONFactory.predefined().forDeclaredFields(Primitives.class).finish();
+
+        assertEquals("test reflected primitives",
+                "{\"i\":1,\"l\":2,\"s\":3,\"d\":4.5,\"b\":true,\"boxed\":null}",
+                jf.encode(new Primitives()));
+
+        jf = JSONFactory.predefined().forClassMethods(Primitives.class, "lm").finish();
+
+        assertEquals("test reflected primitives",
+                "{\"lm\":20}",
+                jf.encode(new Primitives()));
+    }
+
+    @Test
+    public void finalTypes() throws IOException {
+        FooClass fc = new FooClass();
+        fc.d0 = "d0v";
+
+        JSONFactory jf = JSONFactory.predefined()
+                .forClass(String.class, new Writer<String>() {
+                    @Override
+                    public void write(JSONFactory.Session session, String value) throws IOException {
+                        session.writeString(value.toUpperCase());
+                    }
+                })
+                .forFields(FooClass.class, "d0", "d1")
+                .finish();
+
+        assertEquals("test pre-resolved writer", "{\"d0\":\"D0V\",\"d1\":null}", jf.encode(fc));
+        assertEquals("test pre-resolved writer", "{\"d0\":\"D0V\",\"d1\":null}", jf.encode(fc));
+    }
+
     @Test
     public void run() throws IOException {
         FooClass fc = new FooClass();
@@ -64,4 +123,138 @@ public class ReflectedTest {
                 "{\"d1m\":\"d1v\",\"b1m\":\"b1v\",\"d0m\":\"d0v\"}",
                 jf.encode(fc));
     }
+
+    static class Sparse {
+        private int i;
+        private double d = 1.5;
+        private boolean b;
+        private String s;
+        private Long boxed = 0L;
+        private List<String> list = new ArrayList<String>();
+        private int[] array = {};
+    }
+
+    @Test
+    public void omit() throws IOException {
+        JSONFactory jf;
+
+        jf = JSONFactory.predefined().forDeclaredFields(Sparse.class).omit(Omit.NULLS).finish();
+        assertEquals("test omit nulls",
+                "{\"i\":0,\"d\":1.5,\"b\":false,\"boxed\":0,\"list\":[],\"array\":[]}",
+                jf.encode(new Sparse()));
+
+        jf = JSONFactory.predefined().forDeclaredFields(Sparse.class).omit(Omit.values()).finish();
+        assertEquals("test omit all", "{\"d\":1.5}", jf.encode(new Sparse()));
+
+        jf = JSONFactory.predefined().forDeclaredFields(Sparse.class)
+                .omit(Omit.NULLS, Omit.EMPTY)
+                .omit(Sparse.class, Omit.DEFAULTS)
+                .finish();
+        assertEquals("test class policy",
+                "{\"d\":1.5,\"s\":null,\"list\":[],\"array\":[]}", jf.encode(new Sparse()));
+
+        Map<String, Object> map = new LinkedHashMap<String, Object>();
+        map.put("a", null);
+        map.put("b", 1);
+        map.put("c", Collections.emptyList());
+        assertEquals("test map", "{\"b\":1}", jf.encode(map));
+
+        EnumMap<Omit, Object> enumMap = new EnumMap<Omit, Object>(Omit.class);
+        enumMap.put(Omit.NULLS, null);
+        enumMap.put(Omit.DEFAULTS, 1);
+        enumMap.put(Omit.EMPTY, Collections.emptyList());
+        assertEquals("test enum map", "{\"DEFAULTS\":1}", jf.encode(enumMap));
+
+        map.clear();
+        map.put("a", 1);
+        map.put(null, 2);
+        jf = JSONFactory.predefined().forClass(Map.class, (Writer) Writers.MAP_REVERSED).omit(Omit.NULLS).finish();
+        assertEquals("test reversed map", "{\"1\":\"a\"}", jf.encode(map));
+
+        jf = JSONFactory.predefined()
+                .forClass(Number.class, new Writer<Number>() {
+                    @Override
+                    public void write(JSONFactory.Session session, Number value) throws IOException {
+                        session.writeRawValue(value.toString());
+                    }
+                })
+                .omit(Omit.DEFAULTS)
+                .finish();
+        map.clear();
+        map.put("half", new BigDecimal("0.5"));
+        map.put("zero", new BigDecimal("0.00"));
+        map.put("big", BigInteger.ZERO);
+        assertEquals("test big numbers", "{\"half\":0.5}", jf.encode(map));
+    }
+
+    @Test
+    public void columnar() throws IOException {
+        JSONFactory jf = JSONFactory.predefined()
+                .forDeclaredFields(Primitives.class)
+                .columnar(Primitives.class)
+                .finish();
+
+        Primitives second = new Primitives();
+        second.i = 10;
+        second.boxed = 7;
+        assertEquals("test columnar",
+                "{\"i\":[1,10],\"l\":[2,2],\"s\":[3,3],\"d\":[4.5,4.5],\"b\":[true,true],\"boxed\":[null,7]}",
+                jf.encode(Arrays.asList(new Primitives(), second)));
+
+        assertEquals("test mixed rows", "[{\"i\":1,\"l\":2,\"s\":3,\"d\":4.5,\"b\":true,\"boxed\":null},1]",
+                jf.encode(Arrays.<Object>asList(new Primitives(), 1)));
+        assertEquals("test no rows", "[]", jf.encode(Collections.emptyList()));
+    }
+
+    static class WithStatics {
+        static private final long serialVersionUID = 1L;
+        static int counter = 7;
+        private int a = 1;
+
+        static String version() {
+            return "v1";
+        }
+    }
+
+    @Test
+    public void statics() throws IOException {
+        JSONFactory jf;
+
+        jf = JSONFactory.predefined().forFields(WithStatics.class, "counter", "a").finish();
+        assertEquals("test static field", "{\"counter\":7,\"a\":1}", jf.encode(new WithStatics()));
+
+        jf = JSONFactory.predefined().forDeclaredFields(WithStatics.class).finish();
+        assertEquals("test declared statics", "{\"serialVersionUID\":1,\"counter\":7,\"a\":1}",
+                jf.encode(new WithStatics()));
+
+        jf = JSONFactory.predefined().forClassMethods(WithStatics.class, "version").finish();
+        assertEquals("test static method", "{\"version\":\"v1\"}", jf.encode(new WithStatics()));
+    }
+
+    static final class Opaque {
+    }
+
+    static class FinalMembers {
+        private UUID uuid;
+        private Opaque opaque;
+        private char c = 'x';
+        private Object[] objects = new String[]{"s"};
+    }
+
+    @Test
+    public void finalMembers() throws IOException {
+        JSONFactory jf = JSONFactory.predefined()
+                .forClass(Character.class, new Writer<Character>() {
+                    @Override
+                    public void write(JSONFactory.Session session, Character value) throws IOException {
+                        session.writeString(value.toString());
+                    }
+                })
+                .forDeclaredFields(FinalMembers.class)
+                .finish();
+
+        assertEquals("test final members",
+                "{\"uuid\":null,\"opaque\":null,\"c\":\"x\",\"objects\":[\"s\"]}",
+                jf.encode(new FinalMembers()));
+    }
 }
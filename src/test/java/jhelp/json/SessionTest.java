@@ -0,0 +1,110 @@
+package jhelp.json;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.fail;
+
+@RunWith(JUnit4.class)
+public class SessionTest {
+
+    @Test
+    public void reset() throws IOException {
+        JSONFactory jf = JSONFactory.predefined().finish();
+
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        JSONFactory.Session<ByteArrayOutputStream> session = jf.prepare(first);
+        session.writeObject(new int[]{1, 2}).finish();
+        session.reset(second).writeObject("foo").finish();
+
+        assertEquals("test session reset", "[1,2]", first.toString("UTF-8"));
+        assertEquals("test session reset", "\"foo\"", second.toString("UTF-8"));
+
+        ByteArrayOutputStream third = new ByteArrayOutputStream();
+        session.reset(third).writeObject(1).writeNumber(2).writeString("x").finish();
+        assertEquals("test root values separated after reset", "1 2 \"x\"", third.toString("UTF-8"));
+
+        StringBuilder chars = new StringBuilder();
+        JSONFactory.Session<StringBuilder> charSession = jf.prepareChars(new StringBuilder());
+        charSession.writeObject(0).finish();
+        charSession.reset(chars).writeObject(1).writeObject(2).finish();
+        assertEquals("test char root values separated after reset", "1 2", chars.toString());
+    }
+
+    @Test
+    public void pooled() throws IOException {
+        JSONFactory jf = JSONFactory.predefined()
+                .forClass(Thread.class, new Writer<Thread>() {
+                    @Override
+                    public void write(JSONFactory.Session session, Thread value) throws IOException {
+                        session.startArray();
+                        throw new IllegalStateException();
+                    }
+                })
+                .retainBuffer(1024)
+                .finish();
+
+        assertEquals("test pooled encode", "[1]", jf.encode(new int[]{1}));
+        long[] large = new long[1000]; //beyond the retained buffer
+        assertEquals("test pooled encode", 2001, jf.encode(large).length());
+        try {
+            jf.encode(Thread.currentThread());
+            fail();
+        } catch (IllegalStateException e) {
+            //expected
+        }
+        assertEquals("test pooled encode after failure", "[2]", jf.encode(new int[]{2}));
+        assertEquals("test pooled encode to stream", "[3]",
+                jf.encode(new int[]{3}, new ByteArrayOutputStream()).toString("UTF-8"));
+    }
+
+    @Test
+    public void chars() throws IOException {
+        JSONFactory jf = JSONFactory.predefined().finish();
+
+        assertEquals("test char encode", "\"\u00e9\u4e2d\"", jf.encode("\u00e9\u4e2d"));
+        assertEquals("test byte encode", "\"\u00e9\u4e2d\"", new String(jf.encodeBytes("\u00e9\u4e2d"), "UTF-8"));
+
+        StringBuilder sb = new StringBuilder("x=");
+        assertEquals("test appendable encode", "x=[1,\"a\"]",
+                jf.encodeChars(new Object[]{1, "a"}, sb).toString());
+    }
+
+    @Test
+    public void sizeHint() throws IOException {
+        JSONFactory jf = JSONFactory.predefined().sizeHint(int[].class, 100).finish();
+
+        assertEquals("test seeded hint", 150, jf.sizeHint(int[].class));
+        assertEquals("test unknown hint", 0, jf.sizeHint(String.class));
+
+        for (int i=0; i<100; i++) {
+            jf.encode("0123456789");
+        }
+        assertEquals("test learned hint", 12, jf.sizeHint(String.class));
+        assertEquals("test presized encode", "[1,2,3]", new String(jf.encodeBytes(new int[]{1, 2, 3}), "UTF-8"));
+    }
+
+    @Test
+    public void arrayBounds() throws IOException {
+        JSONFactory jf = JSONFactory.predefined().finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JSONFactory.Session<ByteArrayOutputStream> session = jf.prepare(out);
+        int[][] bounds = {{-1, 1}, {0, 4}, {2, -1}, {1, Integer.MAX_VALUE}};
+        for (int[] b : bounds) {
+            try {
+                session.writeArray(new long[]{1, 2, 3}, b[0], b[1]);
+                fail();
+            } catch (IndexOutOfBoundsException e) {
+                //expected
+            }
+        }
+        session.writeArray(new long[]{1, 2, 3}, 1, 2).finish();
+        assertEquals("test nothing written out of bounds", "[2,3]", out.toString("UTF-8"));
+    }
+}
@@ -0,0 +1,116 @@
+package jhelp.json;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.stream.IntStream;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+@RunWith(JUnit4.class)
+public class StreamingTest {
+
+    @Test
+    public void sources() throws IOException {
+        JSONFactory jf = JSONFactory.predefined().finish();
+
+        assertEquals("test iterator", "[1,\"a\"]", jf.encode(Arrays.asList(1, "a").iterator()));
+        assertEquals("test stream", "[\"a\",\"b\"]", jf.encode(Arrays.asList("a", "b").stream()));
+        assertEquals("test int stream", "[0,1,2]", jf.encode(IntStream.range(0, 3)));
+        assertEquals("test spliterator", "[true]", jf.encode(Arrays.asList(true).spliterator()));
+    }
+
+    @Test
+    public void autoFlush() throws IOException {
+        JSONFactory jf = JSONFactory.predefined().finish();
+        final int[] flushes = new int[1];
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        Iterator<Long> rows = new Iterator<Long>() {
+            private long n;
+
+            @Override
+            public boolean hasNext() {
+                return n < 100000;
+            }
+
+            @Override
+            public Long next() {
+                return n++;
+            }
+        };
+
+        jf.prepare(baos)
+                .autoFlush(16 * 1024, new Backpressure() {
+                    @Override
+                    public void flushed(JSONFactory.Session session, long written) throws IOException {
+                        assertEquals(written, baos.size());
+                        flushes[0]++;
+                    }
+                })
+                .writeObject(rows)
+                .finish();
+
+        assertTrue(flushes[0] > 10);
+        assertTrue(baos.toString("UTF-8").startsWith("[0,1,2,"));
+        assertTrue(baos.toString("UTF-8").endsWith(",99999]"));
+    }
+
+    @Test
+    public void autoFlushArray() throws IOException {
+        JSONFactory jf = JSONFactory.predefined().finish();
+        final int[] flushes = new int[1];
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        long[] longs = new long[100000];
+        for (int i=0; i<longs.length; i++) {
+            longs[i] = i;
+        }
+
+        jf.prepare(baos)
+                .autoFlush(16 * 1024, new Backpressure() {
+                    @Override
+                    public void flushed(JSONFactory.Session session, long written) throws IOException {
+                        assertEquals(written, baos.size());
+                        flushes[0]++;
+                    }
+                })
+                .writeArray(longs, 0, longs.length)
+                .finish();
+
+        assertTrue(flushes[0] > 10);
+        assertTrue(baos.toString("UTF-8").endsWith(",99999]"));
+    }
+
+    @Test
+    public void records() throws IOException {
+        JSONFactory jf = JSONFactory.predefined().finish();
+
+        ByteArrayOutputStream baos = jf.encodeAll(
+                Arrays.asList(1, "a", new int[]{2}, null), new ByteArrayOutputStream(), "\n");
+        assertEquals("test ndjson", "1\n\"a\"\n[2]\nnull\n", baos.toString("UTF-8"));
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final int[] flushes = new int[1];
+        JSONFactory.Session<ByteArrayOutputStream> session = jf.prepare(out)
+                .autoFlush(1 << 20, new Backpressure() {
+                    @Override
+                    public void flushed(JSONFactory.Session session, long written) throws IOException {
+                        assertEquals(written, out.size());
+                        flushes[0]++;
+                    }
+                })
+                .separateRecords(",", 2);
+        for (int i=0; i<5; i++) {
+            session.writeRecord(i);
+        }
+        session.finish();
+        assertEquals("test record flush", 2, flushes[0]);
+        assertEquals("test record flush", "0,1,2,3,4,", out.toString("UTF-8"));
+    }
+}